@@ -0,0 +1,54 @@
+package atomiccounter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики под конкуренцией: CAS-цикл из AtomicCounter (через Unsafe, со счётчиком попыток), штатный
+ * AtomicInteger, LongAdder и synchronized. Бенчмарк лежит в пакете atomiccounter, чтобы видеть MyAtomicCounter.
+ * Число потоков задаётся снаружи (-t или BenchmarkRunner).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+
+	private AtomicCounter.MyAtomicCounter unsafeCounter;
+	private AtomicInteger atomicInteger;
+	private LongAdder longAdder;
+	private int synchronizedCounter;
+
+	@Setup
+	public void setUp() {
+		unsafeCounter = new AtomicCounter.MyAtomicCounter(0);
+		atomicInteger = new AtomicInteger();
+		longAdder = new LongAdder();
+		synchronizedCounter = 0;
+	}
+
+	@Benchmark
+	public int unsafeCasLoop() {
+		return unsafeCounter.myIncrementAndGet();
+	}
+
+	@Benchmark
+	public int atomicInteger() {
+		return atomicInteger.incrementAndGet();
+	}
+
+	@Benchmark
+	public void longAdder() {
+		longAdder.increment();
+	}
+
+	@Benchmark
+	public synchronized int synchronizedCounter() {
+		return ++synchronizedCounter;
+	}
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Прогоняет бенчмарки для нескольких значений числа потоков и пишет результаты JMH в JSON, по файлу на значение:
+ * results/threads-<N>.json. Файлы разных релизов можно сравнивать друг с другом (например, в jmh.morethan.io).
+ *
+ * Аргументы (все необязательны): регулярное выражение для имён бенчмарков, список потоков через запятую,
+ * каталог для результатов. По умолчанию - все бенчмарки, потоки 1,2,4,8, каталог results.
+ *
+ * Для обычных бенчмарков N - это число потоков (-t N), для групповых (producer/consumer, Person) - N потоков
+ * в каждой роли (-tg N,N). JMH не даёт задать -tg только групповым бенчмаркам, поэтому на каждое N два прогона,
+ * а результаты сливаются в один файл.
+ */
+public class BenchmarkRunner {
+
+	private static final String GROUP_BENCHMARKS = "ProducerConsumerBenchmark|PersonBenchmark";
+
+	public static void main(String[] args) throws Exception {
+		String include = args.length > 0 ? args[0] : ".*";
+		int[] threadCounts = args.length > 1
+				? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+				: new int[]{1, 2, 4, 8};
+		File results = new File(args.length > 2 ? args[2] : "results");
+		if (!results.isDirectory() && !results.mkdirs()) {
+			throw new IllegalStateException("Cannot create " + results);
+		}
+
+		for (int threads : threadCounts) {
+			List<RunResult> runResults = new ArrayList<>();
+			runResults.addAll(run(new OptionsBuilder()
+					.include(include)
+					.exclude(GROUP_BENCHMARKS)
+					.threads(threads)
+					.build()));
+			runResults.addAll(run(new OptionsBuilder()
+					.include("^(?=.*(?:" + GROUP_BENCHMARKS + "))(?=.*(?:" + include + "))")
+					.threadGroups(threads, threads)
+					.build()));
+
+			File result = new File(results, "threads-" + threads + ".json");
+			try (PrintStream out = new PrintStream(result, "UTF-8")) {
+				ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(runResults);
+			}
+			System.out.println("Results for " + threads + " threads: " + result);
+		}
+	}
+
+	private static Collection<RunResult> run(Options options) throws RunnerException {
+		try {
+			return new Runner(options).run();
+		} catch (NoBenchmarksException e) {
+			return List.of();
+		}
+	}
+}
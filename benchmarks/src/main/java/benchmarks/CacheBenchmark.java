@@ -0,0 +1,48 @@
+package benchmarks;
+
+import locks.CacheWithReadWriteLock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheWithReadWriteLock при разной доле чтений и разном числе ключей. Каждая операция - get() или put()
+ * случайного ключа из [0, keys); число потоков задаётся снаружи.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+	@Param({"50", "90", "99"})
+	public int readPercent;
+
+	@Param({"1000", "100000"})
+	public int keys;
+
+	private CacheWithReadWriteLock cache;
+
+	@Setup
+	public void setUp() {
+		cache = new CacheWithReadWriteLock();
+		for (long key = 0; key < keys; key++) {
+			cache.put(key, Long.toString(key));
+		}
+	}
+
+	@Benchmark
+	public void readWrite(Blackhole blackhole) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long key = random.nextInt(keys);
+		if (random.nextInt(100) < readPercent) {
+			blackhole.consume(cache.get(key));
+		} else {
+			blackhole.consume(cache.put(key, "value"));
+		}
+	}
+}
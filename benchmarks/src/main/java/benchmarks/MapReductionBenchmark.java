@@ -0,0 +1,83 @@
+package benchmarks;
+
+import collections.MovieMapStatistics;
+import collections.model.Actor;
+import collections.model.Movie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Свёртки из ConcurrentHashMapParallelPatterns: три отдельных прохода (reduce max, search, reduce sum) против
+ * одного прохода MovieMapStatistics.of() с тем же порогом. Порог параллелизма: sequential - Long.MAX_VALUE (всё в вызывающем
+ * потоке), parallel - 1 (дробить до конца), auto - MovieMapStatistics.parallelismThreshold().
+ *
+ * Карта актёр -> фильмы генерируется, чтобы бенчмарк не зависел от files/movies-mpaa.txt; размер по умолчанию
+ * близок к настоящему файлу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapReductionBenchmark {
+
+	@Param({"20000", "200000"})
+	public int actors;
+
+	@Param({"sequential", "parallel", "auto"})
+	public String threshold;
+
+	private ConcurrentHashMap<Actor, Set<Movie>> map;
+	private long parallelismThreshold;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		Actor[] cast = new Actor[actors];
+		for (int i = 0; i < actors; i++) {
+			cast[i] = new Actor("Last" + i, "First" + i);
+		}
+		map = new ConcurrentHashMap<>();
+		int movies = actors * 7 / 10;
+		for (int m = 0; m < movies; m++) {
+			Movie movie = new Movie("Movie " + m, 1920 + random.nextInt(100));
+			int size = 5 + random.nextInt(20);
+			for (int i = 0; i < size; i++) {
+				// квадрат равномерного - немного очень занятых актёров и длинный хвост
+				double u = random.nextDouble();
+				Actor actor = cast[(int) (u * u * actors)];
+				movie.addActor(actor);
+				map.computeIfAbsent(actor, a -> new HashSet<>()).add(movie);
+			}
+		}
+		switch (threshold) {
+			case "sequential":
+				parallelismThreshold = Long.MAX_VALUE;
+				break;
+			case "parallel":
+				parallelismThreshold = 1;
+				break;
+			default:
+				parallelismThreshold = MovieMapStatistics.parallelismThreshold(map);
+		}
+	}
+
+	@Benchmark
+	public Object threePasses() {
+		int max = map.reduce(parallelismThreshold, (actor, movies) -> movies.size(), Integer::max);
+		Actor mostSeen = map.search(parallelismThreshold, (actor, movies) -> movies.size() == max ? actor : null);
+		int sum = map.reduce(parallelismThreshold, (actor, movies) -> movies.size(), Integer::sum);
+		return new Object[]{mostSeen, sum / map.size()};
+	}
+
+	@Benchmark
+	public MovieMapStatistics onePass() {
+		return MovieMapStatistics.of(map, parallelismThreshold);
+	}
+}
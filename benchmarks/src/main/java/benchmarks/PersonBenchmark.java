@@ -0,0 +1,76 @@
+package benchmarks;
+
+import basics.synchronization.Person;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Три схемы блокировок из Person: A - монитор экземпляра, B - один статический монитор на всех, C - отдельный
+ * монитор на каждое поле. Половина потоков читает имя, половина - возраст; objects = shared - все читают один
+ * Person, perThread - у каждого потока свой (тогда схема B всё равно сериализует всех).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonBenchmark {
+
+	@Param({"A", "B", "C"})
+	public String scheme;
+
+	@Param({"shared", "perThread"})
+	public String objects;
+
+	private Person shared;
+
+	@State(Scope.Thread)
+	public static class Own {
+
+		Person person;
+
+		@Setup
+		public void setUp() {
+			person = new Person("John", 42);
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		shared = new Person("John", 42);
+	}
+
+	private Person person(Own own) {
+		return "shared".equals(objects) ? shared : own.person;
+	}
+
+	@Benchmark
+	@Group("nameAndAge")
+	public String name(Own own) {
+		Person person = person(own);
+		switch (scheme) {
+			case "A":
+				return person.getNameA();
+			case "B":
+				return person.getNameB();
+			default:
+				return person.getNameC();
+		}
+	}
+
+	@Benchmark
+	@Group("nameAndAge")
+	public int age(Own own) {
+		Person person = person(own);
+		switch (scheme) {
+			case "A":
+				return person.getAgeA();
+			case "B":
+				return person.getAgeB();
+			default:
+				return person.getAgeC();
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package benchmarks;
+
+import collections.MpmcArrayQueue;
+import locks.TwoLockBoundedQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Три варианта producer/consumer из проекта и TwoLockBoundedQueue:
+ * - waitNotify - synchronized, wait()/notifyAll() и массив-стек (basics.waitnotify.ProducerConsumer);
+ * - lockCondition - ReentrantLock, две Condition и signalAll() над ArrayList (locks.ProducerConsumerWithLocks);
+ * - blockingQueue - ArrayBlockingQueue (collections.ProducerConsumer);
+ * - twoLockQueue - locks.TwoLockBoundedQueue;
+ * - mpmcQueue - collections.MpmcArrayQueue вместо ArrayBlockingQueue.
+ *
+ * В проекте первые два варианта живут внутри main(), поэтому здесь повторены их схемы синхронизации. Ожидание
+ * везде с таймаутом: когда JMH останавливает замер, производители и потребители выходят из ожидания по
+ * Control.stopMeasurement, а не зависают на полном/пустом буфере. Число производителей и потребителей задаётся
+ * через -tg N,N (BenchmarkRunner делает это сам).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerConsumerBenchmark {
+
+	@Param({"waitNotify", "lockCondition", "blockingQueue", "twoLockQueue", "mpmcQueue"})
+	public String variant;
+
+	@Param({"10", "1024"})
+	public int bufferSize;
+
+	private Buffer buffer;
+
+	interface Buffer {
+
+		boolean offer(int item) throws InterruptedException;
+
+		/**
+		 * Возвращает -1, если за таймаут ничего не появилось.
+		 */
+		int poll() throws InterruptedException;
+	}
+
+	@Setup
+	public void setUp() {
+		switch (variant) {
+			case "waitNotify":
+				buffer = new WaitNotifyBuffer(bufferSize);
+				break;
+			case "lockCondition":
+				buffer = new LockConditionBuffer(bufferSize);
+				break;
+			case "blockingQueue":
+				buffer = blockingQueue(new ArrayBlockingQueue<>(bufferSize));
+				break;
+			case "mpmcQueue":
+				buffer = blockingQueue(new MpmcArrayQueue<>(bufferSize));
+				break;
+			case "twoLockQueue":
+				TwoLockBoundedQueue twoLockQueue = new TwoLockBoundedQueue(bufferSize);
+				buffer = new Buffer() {
+					@Override
+					public boolean offer(int item) throws InterruptedException {
+						return twoLockQueue.offer(item, 1, TimeUnit.MILLISECONDS);
+					}
+
+					@Override
+					public int poll() throws InterruptedException {
+						try {
+							return twoLockQueue.poll(1, TimeUnit.MILLISECONDS);
+						} catch (TimeoutException e) {
+							return -1;
+						}
+					}
+				};
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown variant: " + variant);
+		}
+	}
+
+	private static Buffer blockingQueue(BlockingQueue<Integer> queue) {
+		return new Buffer() {
+			@Override
+			public boolean offer(int item) throws InterruptedException {
+				return queue.offer(item, 1, TimeUnit.MILLISECONDS);
+			}
+
+			@Override
+			public int poll() throws InterruptedException {
+				Integer item = queue.poll(1, TimeUnit.MILLISECONDS);
+				return item == null ? -1 : item;
+			}
+		};
+	}
+
+	@Benchmark
+	@Group("transfer")
+	public boolean produce(Control control) throws InterruptedException {
+		while (!control.stopMeasurement) {
+			if (buffer.offer(1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Benchmark
+	@Group("transfer")
+	public int consume(Control control) throws InterruptedException {
+		while (!control.stopMeasurement) {
+			int item = buffer.poll();
+			if (item >= 0) {
+				return item;
+			}
+		}
+		return -1;
+	}
+
+	static class WaitNotifyBuffer implements Buffer {
+
+		private final int[] items;
+		private int count;
+
+		WaitNotifyBuffer(int capacity) {
+			items = new int[capacity];
+		}
+
+		@Override
+		public synchronized boolean offer(int item) throws InterruptedException {
+			if (count == items.length) {
+				wait(1);
+				if (count == items.length) {
+					return false;
+				}
+			}
+			items[count++] = item;
+			notifyAll();
+			return true;
+		}
+
+		@Override
+		public synchronized int poll() throws InterruptedException {
+			if (count == 0) {
+				wait(1);
+				if (count == 0) {
+					return -1;
+				}
+			}
+			int item = items[--count];
+			notifyAll();
+			return item;
+		}
+	}
+
+	static class LockConditionBuffer implements Buffer {
+
+		private final List<Integer> items = new ArrayList<>();
+		private final int capacity;
+		private final Lock lock = new ReentrantLock();
+		private final Condition isEmpty = lock.newCondition();
+		private final Condition isFull = lock.newCondition();
+
+		LockConditionBuffer(int capacity) {
+			this.capacity = capacity;
+		}
+
+		@Override
+		public boolean offer(int item) throws InterruptedException {
+			lock.lock();
+			try {
+				if (items.size() == capacity && (!isFull.await(1, TimeUnit.MILLISECONDS) || items.size() == capacity)) {
+					return false;
+				}
+				items.add(item);
+				isEmpty.signalAll();
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int poll() throws InterruptedException {
+			lock.lock();
+			try {
+				if (items.isEmpty() && (!isEmpty.await(1, TimeUnit.MILLISECONDS) || items.isEmpty())) {
+					return -1;
+				}
+				int item = items.remove(items.size() - 1);
+				isFull.signalAll();
+				return item;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package actors;
+
+/**
+ * Поведение актора: что делать с очередным сообщением.
+ *
+ * receive() для одного актора никогда не вызывается параллельно - сообщения обрабатываются строго по одному
+ * и в порядке получения от каждого отправителя, поэтому состояние актора (поля реализации) не нужно защищать
+ * ни блокировками, ни volatile: видимость между сменами рабочих потоков обеспечивает сама очередь задач пула.
+ */
+@FunctionalInterface
+public interface Actor<M> {
+
+	void receive(ActorRef<M> self, M message) throws Exception;
+}
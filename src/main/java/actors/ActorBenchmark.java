@@ -0,0 +1,187 @@
+package actors;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Пропускная способность ActorSystem и сколько памяти выделяется на одно сообщение.
+ *
+ * - ping-pong: пары акторов перебрасываются одним и тем же сообщением; одна пара - чистая стоимость доставки
+ *   (сообщение, планирование, переключение), много пар - мультиплексирование акторов по рабочим потокам;
+ * - fan-out: один актор-маршрутизатор раздаёт сообщения по кругу нескольким акторам-исполнителям.
+ * Для сравнения - ping-pong двух потоков через две ArrayBlockingQueue, как в ProducerConsumer.
+ *
+ * Сообщения в прогонах - один общий объект, поэтому всё, что выделено в памяти, - расходы самой среды (узел
+ * почтового ящика, обёртка задачи в ForkJoinPool.execute()). Выделения считаются по com.sun.management.ThreadMXBean для всех потоков.
+ */
+public class ActorBenchmark {
+
+	private static final Object BALL = new Object();
+
+	private static final class Player implements Actor<Object> {
+
+		private final long rounds;
+		private final CountDownLatch done;
+		private ActorRef<Object> partner;
+		private long received;
+
+		Player(long rounds, CountDownLatch done) {
+			this.rounds = rounds;
+			this.done = done;
+		}
+
+		@Override
+		public void receive(ActorRef<Object> self, Object message) {
+			if (++received == rounds && done != null) {
+				// партнёр больше не получит ответа - пара остановилась
+				done.countDown();
+			} else {
+				partner.tell(message);
+			}
+		}
+	}
+
+	/**
+	 * pairs пар по rounds ответов; возвращает число сообщений.
+	 */
+	static long pingPong(ActorSystem system, int pairs, long rounds) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(pairs);
+		ActorRef<?>[] starters = new ActorRef<?>[pairs];
+		for (int i = 0; i < pairs; i++) {
+			Player ping = new Player(rounds, done);
+			Player pong = new Player(Long.MAX_VALUE, null);
+			ActorRef<Object> pingRef = system.spawn("ping-" + i, ping);
+			ActorRef<Object> pongRef = system.spawn("pong-" + i, pong);
+			ping.partner = pongRef;
+			pong.partner = pingRef;
+			starters[i] = pongRef;
+		}
+		for (ActorRef<?> starter : starters) {
+			@SuppressWarnings("unchecked")
+			ActorRef<Object> ref = (ActorRef<Object>) starter;
+			ref.tell(BALL);
+		}
+		done.await();
+		return 2 * pairs * rounds;
+	}
+
+	/**
+	 * Маршрутизатор раздаёт messages сообщений по кругу workers исполнителям; возвращает число сообщений.
+	 */
+	static long fanOut(ActorSystem system, int workers, long messages) throws InterruptedException {
+		long perWorker = messages / workers;
+		CountDownLatch done = new CountDownLatch(workers);
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ActorRef<Object>[] targets = new ActorRef[workers];
+		for (int i = 0; i < workers; i++) {
+			long[] received = new long[1];
+			targets[i] = system.spawn("worker-" + i, (self, message) -> {
+				if (++received[0] == perWorker) {
+					done.countDown();
+				}
+			});
+		}
+		int[] next = new int[1];
+		ActorRef<Object> router = system.spawn("router", (self, message) -> {
+			targets[next[0]].tell(message);
+			next[0] = (next[0] + 1) % workers;
+		});
+		for (long i = 0; i < perWorker * workers; i++) {
+			router.tell(BALL);
+		}
+		done.await();
+		return 2 * perWorker * workers;
+	}
+
+	/**
+	 * Тот же ping-pong на двух потоках и двух ArrayBlockingQueue.
+	 */
+	static long threadPingPong(long rounds) throws InterruptedException {
+		BlockingQueue<Object> toPong = new ArrayBlockingQueue<>(1);
+		BlockingQueue<Object> toPing = new ArrayBlockingQueue<>(1);
+		Thread pong = new Thread(() -> {
+			try {
+				for (long i = 0; i < rounds; i++) {
+					toPing.put(toPong.take());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "pong");
+		pong.start();
+		for (long i = 0; i < rounds; i++) {
+			toPong.put(BALL);
+			toPing.take();
+		}
+		pong.join();
+		return 2 * rounds;
+	}
+
+	/**
+	 * Байты, выделенные всеми живыми потоками с их старта.
+	 */
+	static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	interface Scenario {
+		long run() throws InterruptedException;
+	}
+
+	static void measure(String name, Scenario scenario) throws InterruptedException {
+		// прогрев JIT
+		scenario.run();
+		double best = 0;
+		double bytesPerMessage = 0;
+		for (int round = 0; round < 3; round++) {
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			long messages = scenario.run();
+			long elapsed = System.nanoTime() - start;
+			double rate = messages * 1e9 / elapsed;
+			if (rate > best) {
+				best = rate;
+				bytesPerMessage = (double) (allocatedBytes() - allocated) / messages;
+			}
+		}
+		System.out.printf("%-44s %14.0f %12.1f%n", name, best, bytesPerMessage);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+		long messages = 2_000_000;
+
+		System.out.println(workers + " worker threads");
+		System.out.printf("%-44s %14s %12s%n", "", "messages/s", "bytes/msg");
+		measure("threads + ArrayBlockingQueue ping-pong", () -> threadPingPong(messages / 2));
+		for (int throughput : new int[]{1, ActorSystem.DEFAULT_THROUGHPUT}) {
+			try (ActorSystem system = new ActorSystem(workers, throughput)) {
+				String quota = ", throughput " + throughput;
+				measure("ping-pong, 1 pair" + quota, () -> pingPong(system, 1, messages / 2));
+				measure("ping-pong, 64 pairs" + quota, () -> pingPong(system, 64, messages / 128));
+				measure("fan-out, 1 router -> 8 workers" + quota, () -> fanOut(system, 8, messages / 2));
+			}
+		}
+
+		// простаивающие акторы не стоят потоков
+		try (ActorSystem system = new ActorSystem(workers)) {
+			int before = ManagementFactory.getThreadMXBean().getThreadCount();
+			for (int i = 0; i < 100_000; i++) {
+				system.spawn("idle-" + i, (self, message) -> {
+				});
+			}
+			pingPong(system, 1, 1_000);
+			System.out.println("100000 idle actors: " + system.threads() + " worker threads, JVM threads "
+					+ before + " -> " + ManagementFactory.getThreadMXBean().getThreadCount());
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package actors;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Адрес актора: единственное, что о нём знают остальные. tell() кладёт сообщение в почтовый ящик и, если актор
+ * простаивал, ставит его в очередь пула ActorSystem.
+ *
+ * Актор запланирован в пуле не больше одного раза: флаг scheduled переходит false -> true только у одного
+ * отправителя, и только он отправляет задачу в пул. Рабочий поток обрабатывает не больше throughput сообщений,
+ * после чего отпускает поток другим акторам (иначе один болтливый актор занял бы рабочий поток целиком),
+ * снимает флаг и, если в ящике ещё что-то есть, планирует актора снова - в конец очереди пула.
+ * Актор без сообщений не занимает ни потока, ни места в очереди пула - только свой объект и ящик.
+ */
+public final class ActorRef<M> {
+
+	private final String name;
+	private final Actor<M> actor;
+	private final ActorSystem system;
+	private final Mailbox<M> mailbox = new Mailbox<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	// одна задача на актора на всё время жизни, а не новая лямбда на каждое планирование
+	private final Runnable run = this::process;
+
+	ActorRef(String name, Actor<M> actor, ActorSystem system) {
+		this.name = name;
+		this.actor = actor;
+		this.system = system;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public void tell(M message) {
+		if (message == null) {
+			throw new NullPointerException("message");
+		}
+		mailbox.offer(message);
+		schedule();
+	}
+
+	private void schedule() {
+		// сообщение привязано release-записью, а не volatile; без барьера чтение scheduled могло бы выполниться
+		// раньше неё, и мы увидели бы старое true, пока рабочий поток после scheduled.set(false) видит пустой ящик
+		VarHandle.fullFence();
+		// дешёвая проверка без CAS: актор уже запланирован - его поток увидит наше сообщение
+		if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+			system.execute(run);
+		}
+	}
+
+	private void process() {
+		int quota = system.throughput();
+		try {
+			for (int i = 0; i < quota; i++) {
+				M message = mailbox.poll();
+				if (message == null) {
+					break;
+				}
+				try {
+					actor.receive(this, message);
+				} catch (Exception e) {
+					// надзора (supervision) нет: сообщение теряется, актор продолжает работу
+					system.failed(this, message, e);
+				}
+			}
+		} finally {
+			scheduled.set(false);
+			// сообщение могло прийти после последнего poll(), но до снятия флага - его отправитель нас не запланировал
+			if (!mailbox.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ActorRef[" + name + "]";
+	}
+}
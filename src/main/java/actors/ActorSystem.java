@@ -0,0 +1,77 @@
+package actors;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Среда выполнения акторов: любое количество акторов поверх небольшого общего пула рабочих потоков.
+ *
+ * В locks.ProducerConsumerWithLocks и collections.ProducerConsumer каждый компонент, обменивающийся
+ * сообщениями, - это свои потоки и свой буфер под блокировкой; тысяча компонентов - тысячи потоков, большая часть
+ * которых спит в await(). Здесь компонент - актор: поведение (Actor) плюс почтовый ящик без блокировок (Mailbox).
+ * Потоков столько, сколько задано в конструкторе, а актор получает поток только пока у него есть сообщения,
+ * и не дольше, чем на throughput сообщений подряд (см. ActorRef).
+ *
+ * Пул - ForkJoinPool в режиме asyncMode: у каждого рабочего потока своя очередь задач, поэтому актор,
+ * запланированный из другого актора, попадает в очередь того же потока (и в его кэш), а простаивающие потоки
+ * забирают работу у загруженных (work stealing).
+ *
+ * Чем больше throughput, тем меньше переключений между акторами (и тем выше пропускная способность), но тем
+ * дольше ждут своей очереди остальные акторы - это выбор между пропускной способностью и справедливостью.
+ */
+public class ActorSystem implements AutoCloseable {
+
+	public static final int DEFAULT_THROUGHPUT = 32;
+
+	private final ForkJoinPool pool;
+	private final int throughput;
+
+	public ActorSystem(int workers) {
+		this(workers, DEFAULT_THROUGHPUT);
+	}
+
+	public ActorSystem(int workers, int throughput) {
+		if (throughput <= 0) {
+			throw new IllegalArgumentException("throughput must be positive: " + throughput);
+		}
+		this.pool = new ForkJoinPool(workers, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		this.throughput = throughput;
+	}
+
+	public <M> ActorRef<M> spawn(String name, Actor<M> actor) {
+		return new ActorRef<>(name, actor, this);
+	}
+
+	int throughput() {
+		return throughput;
+	}
+
+	void execute(Runnable task) {
+		pool.execute(task);
+	}
+
+	void failed(ActorRef<?> actor, Object message, Exception e) {
+		System.err.println(actor + " failed to process " + message + ": " + e);
+	}
+
+	/**
+	 * Сколько рабочих потоков пул успел создать (не больше workers).
+	 */
+	public int threads() {
+		return pool.getPoolSize();
+	}
+
+	/**
+	 * Останавливает пул и ждёт до 10 секунд, пока акторы доработают. Прерывание не бросается, а восстанавливается
+	 * флагом потока (AutoCloseable не советует бросать InterruptedException из close()).
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+		try {
+			pool.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package actors;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Почтовый ящик актора: очередь без блокировок для многих производителей и одного потребителя (MPSC, связный
+ * список Дмитрия Вьюкова).
+ *
+ * Отправитель ставит свой узел в хвост одной атомарной операцией getAndSet() - без CAS-цикла, поэтому
+ * отправители не проигрывают друг другу и не повторяют попыток, - и потом привязывает к нему предыдущий узел.
+ * Забирает сообщения всегда один поток (тот, что сейчас обрабатывает актора), так что голова - обычное поле.
+ * На сообщение приходится ровно один новый объект - узел.
+ *
+ * Между getAndSet() и привязкой узла очередь для потребителя выглядит пустой. Это не теряет сообщений:
+ * отправитель планирует актора уже после привязки (см. ActorRef.tell()).
+ */
+final class Mailbox<M> {
+
+	private static final VarHandle TAIL;
+	private static final VarHandle NEXT;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			TAIL = lookup.findVarHandle(Mailbox.class, "tail", Node.class);
+			NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	static final class Node<M> {
+
+		M message;
+		@SuppressWarnings("unused")
+		private volatile Node<M> next;
+
+		Node(M message) {
+			this.message = message;
+		}
+	}
+
+	// голова - пустой узел-заглушка, сообщения начинаются с head.next
+	private Node<M> head;
+	@SuppressWarnings("unused")
+	private volatile Node<M> tail;
+
+	Mailbox() {
+		Node<M> stub = new Node<>(null);
+		head = stub;
+		tail = stub;
+	}
+
+	void offer(M message) {
+		Node<M> node = new Node<>(message);
+		@SuppressWarnings("unchecked")
+		Node<M> previous = (Node<M>) TAIL.getAndSet(this, node);
+		NEXT.setRelease(previous, node);
+	}
+
+	/**
+	 * Только для потока, обрабатывающего актора.
+	 */
+	@SuppressWarnings("unchecked")
+	M poll() {
+		Node<M> next = (Node<M>) NEXT.getAcquire(head);
+		if (next == null) {
+			return null;
+		}
+		head = next;
+		M message = next.message;
+		// узел остаётся заглушкой, сообщение в нём держать незачем
+		next.message = null;
+		return message;
+	}
+
+	/**
+	 * Volatile-чтение: в ActorRef.process() оно идёт после volatile-записи scheduled = false, и acquire-чтение
+	 * могло бы выполниться раньше этой записи.
+	 */
+	boolean isEmpty() {
+		return NEXT.getVolatile(head) == null;
+	}
+}
@@ -1,14 +1,12 @@
 package atomiccounter;
 
+import executors.TaskScope;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -35,7 +33,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class AtomicCounter {
 
-	private static class MyAtomicCounter extends AtomicInteger {
+	static class MyAtomicCounter extends AtomicInteger {
 		
 		private static Unsafe unsafe = null;
 		static {
@@ -79,7 +77,7 @@ public class AtomicCounter {
 	
 	private static MyAtomicCounter counter = new MyAtomicCounter(0);
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
 
 		class Incrementer implements Runnable {
 			
@@ -100,26 +98,18 @@ public class AtomicCounter {
 		}
 		
 		ExecutorService executorService = Executors.newFixedThreadPool(8);
-		List<Future<?>> futures = new ArrayList<>();
 		
-		try {
+		try (TaskScope scope = new TaskScope(executorService)) {
 				
 			for (int i = 0 ; i < 4 ; i++) {
-				futures.add(executorService.submit(new Incrementer()));
+				scope.fork(new Incrementer());
 			}
 			for (int i = 0 ; i < 4 ; i++) {
-				futures.add(executorService.submit(new Decrementer()));
+				scope.fork(new Decrementer());
 			}
 			
-			futures.forEach(
-				future -> {
-					try {
-						future.get();
-					} catch (InterruptedException | ExecutionException e) {
-						System.out.println(e.getMessage());
-					}
-				}
-			);
+			scope.join();
+			scope.throwIfFailed();
 			
 			System.out.println("counter = " + counter);
 			System.out.println("# increments = " + counter.getIncrements());
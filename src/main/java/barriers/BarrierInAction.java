@@ -1,7 +1,7 @@
 package barriers;
 
-import java.util.ArrayList;
-import java.util.List;
+import executors.TaskScope;
+
 import java.util.Random;
 import java.util.concurrent.*;
 
@@ -63,27 +63,23 @@ public class BarrierInAction {
 		ExecutorService executorService = Executors.newFixedThreadPool(4);
 
 		CyclicBarrier barrier = new CyclicBarrier(4, () -> System.out.println("Barrier is opening"));
-		List<Future<String>> futures = new ArrayList<>();
 		
-		try {
+		// одно ожидание на всех вместо future.get(2000) по очереди: тот, кто не дождался, отменяет всех сразу
+		try (TaskScope scope = new TaskScope(executorService)) {
 			for (int i = 0 ; i < 4 ; i++) {
 				Friend friend = new Friend(barrier);
-				futures.add(executorService.submit(friend));
+				scope.fork(friend);
 			}
 			
-			futures.forEach(
-				future -> {
-					try {
-						future.get(2000, TimeUnit.MILLISECONDS);
-					} catch (InterruptedException | ExecutionException e) {
-						System.out.println(e.getMessage());
-					} catch (TimeoutException e) {
-						System.out.println("Timed out");
-						future.cancel(true);
-					}
-				}
-			);
+			scope.join(2000, TimeUnit.MILLISECONDS);
+			if (scope.failure() != null) {
+				System.out.println(scope.failure().getMessage());
+			}
 			
+		} catch (TimeoutException e) {
+			System.out.println("Timed out");
+		} catch (InterruptedException e) {
+			System.out.println(e.getMessage());
 		} finally {
 			executorService.shutdown();
 		}
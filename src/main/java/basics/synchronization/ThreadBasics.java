@@ -1,6 +1,7 @@
 package basics.synchronization;
 
 import basics.waitnotify.LongWrapper;
+import executors.TaskScope;
 
 /**
  * Если у нас есть многоядерный процессор, то мы можем выполнять несколько операций, производимых на компьютере,
@@ -52,6 +53,16 @@ public class ThreadBasics {
         }
         System.out.println(longWrapper.getValue());
 
+        // То же через TaskScope: потоки создаются и дожидаются в одном месте, а если одна задача упадёт, остальные
+        // будут прерваны, и join() вернётся сразу, не дожидаясь их по очереди
+        try (TaskScope scope = TaskScope.open()) {
+            for (int i = 0; i < 5; i++) {
+                scope.fork(runnable);
+            }
+            scope.join();
+        }
+        System.out.println(longWrapper.getValue());
+
         /**
          * Но вообще-то, это не лучший способ использовать многопоточность. Тут мы, получается, можем бесконтрольно создавать
          * треды, которые будут убиваться после выполнения задания. А создание, и уничтодение треда - дорогая операция,
@@ -0,0 +1,381 @@
+package collections;
+
+import collections.model.Actor;
+import collections.model.Movie;
+import collections.model.MovieReader;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Граф "снимались вместе". Карта актёр -> фильмы плюс Movie.actors() - это двудольный граф: актёры с одной стороны,
+ * фильмы с другой. Два актёра связаны через фильм, поэтому расстояние между актёрами в "рукопожатиях" - это половина
+ * расстояния в двудольном графе.
+ *
+ * Граф один раз переупаковывается в массивы (CSR: offsets[v]..offsets[v + 1] - это соседи вершины v в edges[]):
+ * вершины 0..actorCount-1 - актёры, остальные - фильмы. После построения граф не меняется, поэтому запросы можно
+ * выполнять из любого количества потоков без синхронизации, у каждого запроса своё состояние.
+ *
+ * Поиск - поуровневый (level-synchronous) параллельный BFS. Все вершины текущего фронта обрабатываются параллельно,
+ * следующий уровень начинается только после окончания текущего. Посещённые вершины отмечаются в битсете на
+ * AtomicLongArray: вершину "захватывает" тот поток, чей CAS установил бит.
+ *
+ * Direction-optimizing BFS (Beamer): пока фронт маленький, идём сверху вниз (от фронта к непосещённым соседям). Когда
+ * рёбер у фронта становится больше, чем непросмотренных рёбер / ALPHA, выгоднее идти снизу вверх: каждая непосещённая
+ * вершина ищет среди своих соседей хоть одну вершину фронта и останавливается на первой же. Обратно переключаемся,
+ * когда фронт становится меньше vertexCount / BETA.
+ */
+public class CoStarGraph {
+
+	private static final int ALPHA = 14;
+	private static final int BETA = 24;
+	private static final int PARALLEL_FRONTIER = 512;
+	private static final int CHUNK = 1 << 10;
+	private static final int UNREACHED = -1;
+
+	private final Actor[] actors;
+	private final Movie[] movies;
+	private final Map<Actor, Integer> ids;
+	private final int actorCount;
+	private final int vertexCount;
+	private final int[] offsets;
+	private final int[] edges;
+
+	private CoStarGraph(Actor[] actors, Movie[] movies, Map<Actor, Integer> ids, int[] offsets, int[] edges) {
+		this.actors = actors;
+		this.movies = movies;
+		this.ids = ids;
+		this.actorCount = actors.length;
+		this.vertexCount = actors.length + movies.length;
+		this.offsets = offsets;
+		this.edges = edges;
+	}
+
+	public static CoStarGraph of(Map<Actor, Set<Movie>> map) {
+		Actor[] actors = map.keySet().toArray(new Actor[0]);
+		Map<Actor, Integer> ids = new HashMap<>(actors.length * 2);
+		for (int i = 0; i < actors.length; i++) {
+			ids.put(actors[i], i);
+		}
+
+		Map<Movie, Integer> movieIds = new HashMap<>();
+		List<Movie> movies = new ArrayList<>();
+		int[] degrees = new int[actors.length];
+		List<int[]> actorMovies = new ArrayList<>(actors.length);
+		for (int i = 0; i < actors.length; i++) {
+			Set<Movie> filmography = map.get(actors[i]);
+			int[] row = new int[filmography.size()];
+			int k = 0;
+			for (Movie movie : filmography) {
+				Integer id = movieIds.get(movie);
+				if (id == null) {
+					id = actors.length + movies.size();
+					movieIds.put(movie, id);
+					movies.add(movie);
+				}
+				row[k++] = id;
+			}
+			row = k == row.length ? row : Arrays.copyOf(row, k);
+			actorMovies.add(row);
+			degrees[i] = row.length;
+		}
+
+		int vertexCount = actors.length + movies.size();
+		int[] offsets = new int[vertexCount + 1];
+		for (int i = 0; i < actors.length; i++) {
+			offsets[i + 1] = degrees[i];
+			for (int movie : actorMovies.get(i)) {
+				offsets[movie + 1]++;
+			}
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		int[] edges = new int[offsets[vertexCount]];
+		int[] fill = Arrays.copyOf(offsets, vertexCount);
+		for (int i = 0; i < actors.length; i++) {
+			for (int movie : actorMovies.get(i)) {
+				edges[fill[i]++] = movie;
+				edges[fill[movie]++] = i;
+			}
+		}
+		return new CoStarGraph(actors, movies.toArray(new Movie[0]), ids, offsets, edges);
+	}
+
+	public int actorCount() {
+		return actorCount;
+	}
+
+	public int movieCount() {
+		return movies.length;
+	}
+
+	/**
+	 * Кратчайшая цепочка актёров от from до to (включительно), соседи в цепочке снимались в одном фильме.
+	 * Пустой список, если актёры не связаны или кого-то из них нет в графе.
+	 */
+	public List<Actor> shortestPath(Actor from, Actor to) {
+		Integer source = ids.get(from);
+		Integer target = ids.get(to);
+		if (source == null || target == null) {
+			return Collections.emptyList();
+		}
+		Search search = new Search(source, Integer.MAX_VALUE, target);
+		search.run();
+		if (!search.isVisited(target)) {
+			return Collections.emptyList();
+		}
+		LinkedList<Actor> path = new LinkedList<>();
+		for (int v = target; v != UNREACHED; v = search.parents[v]) {
+			if (v < actorCount) {
+				path.addFirst(actors[v]);
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Число "рукопожатий" между актёрами или -1, если они не связаны.
+	 */
+	public int degreesOfSeparation(Actor from, Actor to) {
+		return shortestPath(from, to).size() - 1;
+	}
+
+	/**
+	 * Все актёры не дальше k рукопожатий от actor (сам actor не включается).
+	 */
+	public Set<Actor> withinHops(Actor actor, int k) {
+		Integer source = ids.get(actor);
+		if (source == null) {
+			return Collections.emptySet();
+		}
+		Search search = new Search(source, 2 * k, UNREACHED);
+		search.run();
+		Set<Actor> result = new HashSet<>();
+		for (int v = 0; v < actorCount; v++) {
+			if (v != source && search.isVisited(v)) {
+				result.add(actors[v]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Состояние одного BFS. parents[v] пишет только поток, захвативший v, а читаются они после окончания уровня
+	 * (завершение параллельного стрима даёт happens-before).
+	 */
+	private class Search {
+
+		private final int source;
+		private final int maxDepth;
+		private final int target;
+		private final AtomicLongArray visited = new AtomicLongArray((vertexCount + 63) >>> 6);
+		private final int[] parents = new int[vertexCount];
+
+		Search(int source, int maxDepth, int target) {
+			this.source = source;
+			this.maxDepth = maxDepth;
+			this.target = target;
+		}
+
+		void run() {
+			Arrays.fill(parents, UNREACHED);
+			tryVisit(source);
+			int[] frontier = {source};
+			long unexploredEdges = edges.length - degree(source);
+			boolean bottomUp = false;
+
+			for (int depth = 0; depth < maxDepth && frontier.length > 0; depth++) {
+				if (target != UNREACHED && isVisited(target)) {
+					return;
+				}
+				long frontierEdges = 0;
+				for (int v : frontier) {
+					frontierEdges += degree(v);
+				}
+				if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+					bottomUp = true;
+				} else if (bottomUp && frontier.length < vertexCount / BETA) {
+					bottomUp = false;
+				}
+
+				frontier = bottomUp ? bottomUpStep(frontier) : topDownStep(frontier);
+				for (int v : frontier) {
+					unexploredEdges -= degree(v);
+				}
+			}
+		}
+
+		private int[] topDownStep(int[] frontier) {
+			if (frontier.length < PARALLEL_FRONTIER) {
+				return topDown(frontier, 0, frontier.length);
+			}
+			int chunks = (frontier.length + CHUNK - 1) / CHUNK;
+			return concat(IntStream.range(0, chunks).parallel()
+					.mapToObj(c -> topDown(frontier, c * CHUNK, Math.min(frontier.length, (c + 1) * CHUNK)))
+					.toArray(int[][]::new));
+		}
+
+		private int[] topDown(int[] frontier, int from, int to) {
+			IntBuffer next = new IntBuffer();
+			for (int i = from; i < to; i++) {
+				int v = frontier[i];
+				for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+					int w = edges[e];
+					if (!isVisited(w) && tryVisit(w)) {
+						parents[w] = v;
+						next.add(w);
+					}
+				}
+			}
+			return next.toArray();
+		}
+
+		private int[] bottomUpStep(int[] frontier) {
+			long[] inFrontier = new long[(vertexCount + 63) >>> 6];
+			for (int v : frontier) {
+				inFrontier[v >>> 6] |= 1L << v;
+			}
+			// куски выровнены по 64 вершинам, так что каждое слово visited меняет только один поток
+			int chunks = (vertexCount + CHUNK - 1) / CHUNK;
+			return concat(IntStream.range(0, chunks).parallel()
+					.mapToObj(c -> bottomUp(inFrontier, c * CHUNK, Math.min(vertexCount, (c + 1) * CHUNK)))
+					.toArray(int[][]::new));
+		}
+
+		private int[] bottomUp(long[] inFrontier, int from, int to) {
+			IntBuffer next = new IntBuffer();
+			for (int w = from; w < to; w++) {
+				if (isVisited(w)) {
+					continue;
+				}
+				for (int e = offsets[w]; e < offsets[w + 1]; e++) {
+					int v = edges[e];
+					if ((inFrontier[v >>> 6] & (1L << v)) != 0) {
+						tryVisit(w);
+						parents[w] = v;
+						next.add(w);
+						break;
+					}
+				}
+			}
+			return next.toArray();
+		}
+
+		boolean isVisited(int v) {
+			return (visited.get(v >>> 6) & (1L << v)) != 0;
+		}
+
+		private boolean tryVisit(int v) {
+			int index = v >>> 6;
+			long bit = 1L << v;
+			while (true) {
+				long word = visited.get(index);
+				if ((word & bit) != 0) {
+					return false;
+				}
+				if (visited.compareAndSet(index, word, word | bit)) {
+					return true;
+				}
+			}
+		}
+	}
+
+	private int degree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+
+	private static int[] concat(int[][] parts) {
+		int length = 0;
+		for (int[] part : parts) {
+			length += part.length;
+		}
+		int[] result = new int[length];
+		int position = 0;
+		for (int[] part : parts) {
+			System.arraycopy(part, 0, result, position, part.length);
+			position += part.length;
+		}
+		return result;
+	}
+
+	private static class IntBuffer {
+
+		private int[] values = new int[16];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		ConcurrentHashMap<Actor, Set<Movie>> map = new ConcurrentHashMap<>();
+		new MovieReader().addActorsToMap(map);
+
+		long start = System.nanoTime();
+		CoStarGraph graph = CoStarGraph.of(map);
+		System.out.println("Graph: " + graph.actorCount() + " actors, " + graph.movieCount() + " movies, built in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+		Actor[] actors = graph.actors;
+		Actor from = actors[0];
+		Actor to = actors[actors.length - 1];
+		System.out.println("Path from " + from + " to " + to + ": " + graph.shortestPath(from, to));
+		System.out.println("Actors within 2 hops of " + from + ": " + graph.withinHops(from, 2).size());
+
+		// задержка одного запроса
+		int queries = 2_000;
+		long[] latencies = new long[queries];
+		for (int i = 0; i < queries; i++) {
+			Actor a = actors[ThreadLocalRandom.current().nextInt(actors.length)];
+			Actor b = actors[ThreadLocalRandom.current().nextInt(actors.length)];
+			long t = System.nanoTime();
+			graph.shortestPath(a, b);
+			latencies[i] = System.nanoTime() - t;
+		}
+		Arrays.sort(latencies);
+		System.out.printf("Single query latency: p50 = %.1f us, p99 = %.1f us, max = %.1f us%n",
+				latencies[queries / 2] / 1e3, latencies[queries * 99 / 100] / 1e3, latencies[queries - 1] / 1e3);
+
+		// пропускная способность при одновременных запросах
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			start = System.nanoTime();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executorService.submit(() -> {
+					for (int i = 0; i < queries / threads; i++) {
+						Actor a = actors[ThreadLocalRandom.current().nextInt(actors.length)];
+						Actor b = actors[ThreadLocalRandom.current().nextInt(actors.length)];
+						graph.shortestPath(a, b);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Throughput with %d threads: %.0f queries/sec%n", threads, (queries / threads) * threads / seconds);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+}
@@ -17,16 +17,23 @@ public class ConcurrentHashMapParallelPatterns {
 		reader.addActorsToMap(map);
 		
 		System.out.println("# Actors = " + map.size());
-		
-		int maxMoviesForOneActor = map.reduce(10, (actor, movies) -> movies.size(), Integer::max);
+
+		// Три отдельных прохода по карте: reduce, search и ещё раз reduce
+		long threshold = MovieMapStatistics.parallelismThreshold(map);
+
+		int maxMoviesForOneActor = map.reduce(threshold, (actor, movies) -> movies.size(), Integer::max);
 		System.out.println("Max movies for one actor = " + maxMoviesForOneActor);
 		
 		Actor mostSeenActor = 
-				map.search(10, (actor, movies) -> movies.size() == maxMoviesForOneActor ? actor : null);
+				map.search(threshold, (actor, movies) -> movies.size() == maxMoviesForOneActor ? actor : null);
 		System.out.println("Most seen actor = " + mostSeenActor);
 		
-		int numberOfMoviesReferences = map.reduce(10, (actor, movies) -> movies.size(), Integer::sum);
+		int numberOfMoviesReferences = map.reduce(threshold, (actor, movies) -> movies.size(), Integer::sum);
 		
 		System.out.println("Average movies per actor = " + numberOfMoviesReferences/map.size());
+
+		// То же самое (и немного больше) за один проход
+		MovieMapStatistics statistics = MovieMapStatistics.of(map);
+		System.out.println(statistics);
 	}
 }
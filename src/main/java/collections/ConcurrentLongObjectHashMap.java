@@ -0,0 +1,76 @@
+package collections;
+
+/**
+ * Потокобезопасная карта long -> V: ключ хэшем выбирает один из сегментов, сегмент - это LongObjectHashMap
+ * под своим монитором. Как и в LongObjectHashMap, ключи не упаковываются, а null-значения не поддерживаются.
+ *
+ * Критические секции - это несколько обращений к массивам, поэтому обычный synchronized здесь дешевле
+ * ReadWriteLock: учёт читателей в ReentrantReadWriteLock стоит дороже самого чтения.
+ */
+public class ConcurrentLongObjectHashMap<V> {
+
+	private final LongObjectHashMap<V>[] segments;
+	private final int mask;
+
+	public ConcurrentLongObjectHashMap() {
+		this(16, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ConcurrentLongObjectHashMap(int expectedSize, int concurrencyLevel) {
+		int count = Integer.highestOneBit(Math.max(1, concurrencyLevel));
+		segments = new LongObjectHashMap[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new LongObjectHashMap<>(Math.max(1, expectedSize / count));
+		}
+		mask = count - 1;
+	}
+
+	public V get(long key) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	public V put(long key, V value) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.put(key, value);
+		}
+	}
+
+	public V remove(long key) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.remove(key);
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (LongObjectHashMap<V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Обходит сегменты по очереди, блокируя только текущий, т.е. это не снимок всей карты на один момент.
+	 */
+	public void forEach(LongObjectHashMap.LongObjectConsumer<? super V> action) {
+		for (LongObjectHashMap<V> segment : segments) {
+			synchronized (segment) {
+				segment.forEach(action);
+			}
+		}
+	}
+
+	private LongObjectHashMap<V> segmentFor(long key) {
+		// старшие биты - для выбора ячейки внутри сегмента, здесь берём другие
+		long h = key * 0xC2B2AE3D27D4EB4FL;
+		return segments[(int) (h >>> 40) & mask];
+	}
+}
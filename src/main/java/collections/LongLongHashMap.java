@@ -0,0 +1,142 @@
+package collections;
+
+import java.util.Arrays;
+
+/**
+ * Карта long -> long без упаковки, устроенная так же, как LongObjectHashMap: открытая адресация, линейное
+ * пробирование, удаление со сдвигом хвоста назад. Значение 0 означает пустую ячейку, поэтому хранить 0 нельзя:
+ * put(key, 0) - это remove(key), а get() отсутствующего ключа возвращает 0.
+ *
+ * Помимо обычных операций, наружу открыт доступ к ячейкам таблицы по индексу (capacity(), keyAt(), valueAt()) -
+ * по нему, например, ходит "часовая стрелка" вытеснения в OffHeapCache.
+ *
+ * Класс не потокобезопасный.
+ */
+public class LongLongHashMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private long[] values;
+	private int size;
+	private int shift;
+	private int resizeAt;
+
+	public LongLongHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongLongHashMap(int expectedSize) {
+		long capacity = Math.max(MIN_CAPACITY, (long) expectedSize * 3 / 2 + 1);
+		allocate((int) Math.min(1 << 30, Long.highestOneBit(capacity - 1) << 1));
+	}
+
+	public long get(long key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			long value = values[i];
+			if (value == 0 || keys[i] == key) {
+				return value;
+			}
+		}
+	}
+
+	public long put(long key, long value) {
+		if (value == 0) {
+			return remove(key);
+		}
+		int mask = keys.length - 1;
+		int i = slot(key);
+		for (; values[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				long previous = values[i];
+				values[i] = value;
+				return previous;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > resizeAt) {
+			resize(keys.length << 1);
+		}
+		return 0;
+	}
+
+	public long remove(long key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key); values[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				long previous = values[i];
+				shiftBack(i);
+				size--;
+				return previous;
+			}
+		}
+		return 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	public long keyAt(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Значение в ячейке index или 0, если ячейка пустая.
+	 */
+	public long valueAt(int index) {
+		return values[index];
+	}
+
+	private void shiftBack(int free) {
+		int mask = keys.length - 1;
+		for (int i = (free + 1) & mask; values[i] != 0; i = (i + 1) & mask) {
+			int home = slot(keys[i]);
+			if (((i - home) & mask) >= ((i - free) & mask)) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				free = i;
+			}
+		}
+		values[free] = 0;
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != 0) {
+				int j = slot(oldKeys[i]);
+				while (values[j] != 0) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		resizeAt = capacity / 3 * 2;
+	}
+}
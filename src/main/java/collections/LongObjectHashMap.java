@@ -0,0 +1,168 @@
+package collections;
+
+import java.util.Arrays;
+
+/**
+ * Карта long -> V без упаковки ключей. HashMap<Long, V> на каждую операцию с ключом вне кэша Long.valueOf()
+ * создаёт новый Long, а затем идёт по ссылкам table[i] -> Node -> Long -> значение, т.е. это аллокация и
+ * несколько промахов по кэшу процессора.
+ *
+ * Здесь ключи лежат прямо в long[], значения - в параллельном Object[] (null означает пустую ячейку, поэтому
+ * null-значения не поддерживаются: put(key, null) - это remove(key)). Коллизии разрешаются открытой адресацией
+ * с линейным пробированием: следующая ячейка лежит рядом в памяти, обычно в той же кэш-линии. При удалении
+ * хвост цепочки сдвигается назад (backward shift), так что "надгробий" нет и поиск не деградирует.
+ * Таблица держится заполненной не больше чем на 2/3.
+ *
+ * Класс не потокобезопасный, потокобезопасная версия - ConcurrentLongObjectHashMap.
+ */
+public class LongObjectHashMap<V> {
+
+	@FunctionalInterface
+	public interface LongObjectConsumer<V> {
+		void accept(long key, V value);
+	}
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private int shift;
+	private int resizeAt;
+
+	public LongObjectHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongObjectHashMap(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			Object value = values[i];
+			if (value == null) {
+				return null;
+			}
+			if (keys[i] == key) {
+				return (V) value;
+			}
+		}
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			return remove(key);
+		}
+		int mask = keys.length - 1;
+		int i = slot(key);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > resizeAt) {
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int mask = keys.length - 1;
+		int i = slot(key);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				shiftBack(i);
+				size--;
+				return previous;
+			}
+		}
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(LongObjectConsumer<? super V> action) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				action.accept(keys[i], (V) values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Освободилась ячейка free: сдвигаем на её место следующие элементы цепочки, которые могут там стоять,
+	 * пока не встретим пустую ячейку.
+	 */
+	private void shiftBack(int free) {
+		int mask = keys.length - 1;
+		for (int i = (free + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+			int home = slot(keys[i]);
+			// элемент можно перенести в free, если его "родная" ячейка не лежит циклически в (free, i]
+			if (((i - home) & mask) >= ((i - free) & mask)) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				free = i;
+			}
+		}
+		values[free] = null;
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int mask = keys.length - 1;
+				int j = slot(oldKeys[i]);
+				while (values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		resizeAt = capacity / 3 * 2;
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		long capacity = Math.max(MIN_CAPACITY, (long) expectedSize * 3 / 2 + 1);
+		return (int) Math.min(1 << 30, Long.highestOneBit(capacity - 1) << 1);
+	}
+}
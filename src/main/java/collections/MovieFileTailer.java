@@ -0,0 +1,262 @@
+package collections;
+
+import collections.model.Actor;
+import collections.model.Movie;
+import collections.model.MovieReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Инкрементальная загрузка файла movies-mpaa.txt, в который постоянно дописываются новые строки.
+ * Вместо полного перечитывания через MovieReader.readMovies() запоминаем смещение (в байтах) конца
+ * последней полностью разобранной строки и при каждом изменении файла читаем только то, что дописали.
+ * Незаконченная строка (дописанная без '\n') не разбирается - её перечитаем в следующий раз.
+ *
+ * Об изменениях узнаём через WatchService. Он бывает ленивым (а на некоторых ФС вообще не работает),
+ * поэтому ждём события не дольше pollMillis и после этого всё равно проверяем размер файла - т.е.
+ * в худшем случае получается обычный polling.
+ *
+ * Новые фильмы добавляются прямо в живую ConcurrentHashMap<Actor, Set<Movie>>, из которой в это время
+ * могут читать другие потоки. Поэтому значения - не HashSet, как в addActorsToMap(), а
+ * ConcurrentHashMap.newKeySet(): читатель может перебирать множество фильмов актёра, пока мы в него пишем.
+ *
+ * Если файл стал короче запомненного смещения (его обрезали или подменили), читаем его с начала.
+ * Ошибка чтения (например, NoSuchFileException, пока файл подменяют при ротации) не останавливает поток:
+ * она учитывается в ioErrors(), и файл читается снова при следующем опросе.
+ */
+public class MovieFileTailer implements Runnable, Closeable {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private final Path file;
+	private final ConcurrentHashMap<Actor, Set<Movie>> map;
+	private final long pollMillis;
+
+	private volatile boolean running = true;
+	private volatile long offset;
+
+	private final LongAdder linesIngested = new LongAdder();
+	private final LongAdder badLines = new LongAdder();
+	private final LongAdder ioErrors = new LongAdder();
+	private volatile long lastParseNanos;
+	private volatile long lastIngestLagMillis;
+	private volatile double lastLinesPerSecond;
+
+	public MovieFileTailer(Path file, ConcurrentHashMap<Actor, Set<Movie>> map, long pollMillis) {
+		this.file = file;
+		this.map = map;
+		this.pollMillis = pollMillis;
+	}
+
+	/**
+	 * Дочитывает файл от запомненного смещения до последнего '\n' и применяет новые строки к карте.
+	 * Возвращает количество разобранных строк. Вызывается только из одного потока.
+	 */
+	public int ingestAvailable() throws IOException {
+		long startedAt = System.nanoTime();
+		int lines = 0;
+		long appendedAt;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// время последней дозаписи; берём до чтения, чтобы не захватить более позднюю дозапись
+			appendedAt = Files.getLastModifiedTime(file).toMillis();
+			long size = channel.size();
+			if (size < offset) {
+				offset = 0;
+			}
+			if (size == offset) {
+				return 0;
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			long position = offset;
+			byte[] carry = new byte[0];
+
+			while (position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read <= 0) {
+					break;
+				}
+				position += read;
+
+				byte[] chunk = concat(carry, buffer.array(), read);
+				int lineStart = 0;
+				for (int i = 0; i < chunk.length; i++) {
+					if (chunk[i] == '\n') {
+						apply(new String(chunk, lineStart, i - lineStart, StandardCharsets.ISO_8859_1));
+						lines++;
+						lineStart = i + 1;
+						// смещение двигаем только за целые строки
+						offset = position - (chunk.length - lineStart);
+					}
+				}
+				carry = Arrays.copyOfRange(chunk, lineStart, chunk.length);
+			}
+		}
+
+		if (lines > 0) {
+			long elapsed = System.nanoTime() - startedAt;
+			linesIngested.add(lines);
+			lastParseNanos = elapsed;
+			lastIngestLagMillis = Math.max(0, System.currentTimeMillis() - appendedAt);
+			lastLinesPerSecond = lines * 1e9 / Math.max(elapsed, 1);
+		}
+		return lines;
+	}
+
+	private void apply(String line) {
+		if (line.isBlank()) {
+			return;
+		}
+		Movie movie;
+		try {
+			movie = MovieReader.parseMovie(line.strip());
+		} catch (RuntimeException e) {
+			// битая строка не должна останавливать загрузку
+			badLines.increment();
+			return;
+		}
+		for (Actor actor : movie.actors()) {
+			map.computeIfAbsent(actor, a -> ConcurrentHashMap.newKeySet()).add(movie);
+		}
+	}
+
+	private static byte[] concat(byte[] head, byte[] tail, int tailLength) {
+		byte[] result = new byte[head.length + tailLength];
+		System.arraycopy(head, 0, result, 0, head.length);
+		System.arraycopy(tail, 0, result, head.length, tailLength);
+		return result;
+	}
+
+	@Override
+	public void run() {
+		Path directory = file.toAbsolutePath().getParent();
+		try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+			directory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+			while (running) {
+				try {
+					ingestAvailable();
+				} catch (IOException e) {
+					// файл мог пропасть на время ротации - попробуем при следующем опросе
+					ioErrors.increment();
+				}
+				WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					key.pollEvents();
+					key.reset();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void close() {
+		running = false;
+	}
+
+	public long offset() {
+		return offset;
+	}
+
+	public long linesIngested() {
+		return linesIngested.sum();
+	}
+
+	public long badLines() {
+		return badLines.sum();
+	}
+
+	/**
+	 * Сколько раз чтение файла в run() закончилось IOException.
+	 */
+	public long ioErrors() {
+		return ioErrors.sum();
+	}
+
+	/**
+	 * Сколько байт уже дописано в файл, но ещё не разобрано.
+	 */
+	public long bytesBehind() {
+		try {
+			return Math.max(0, Files.size(file) - offset);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Время чтения и разбора последней пачки новых строк, т.е. сколько прошло от начала ingestAvailable() до момента,
+	 * когда они стали видны в карте. Ожидание до следующего опроса сюда не входит.
+	 */
+	public double lastParseMillis() {
+		return lastParseNanos / 1e6;
+	}
+
+	/**
+	 * Задержка последней пачки: от последней дозаписи в файл (его mtime) до момента, когда строки стали видны в карте.
+	 * Точность ограничена точностью mtime в файловой системе; строки, дописанные раньше последней дозаписи, ждали дольше.
+	 */
+	public long ingestLagMillis() {
+		return lastIngestLagMillis;
+	}
+
+	public double linesPerSecond() {
+		return lastLinesPerSecond;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		ConcurrentHashMap<Actor, Set<Movie>> map = new ConcurrentHashMap<>();
+		Path path = Paths.get("files/movies-mpaa.txt");
+
+		MovieFileTailer tailer = new MovieFileTailer(path, map, 200);
+		int initial = tailer.ingestAvailable();
+		System.out.println("Initial load: " + initial + " lines, " + map.size() + " actors, "
+				+ String.format("%.0f lines/sec", tailer.linesPerSecond()));
+
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+		try {
+			executorService.submit(tailer);
+
+			// читатель продолжает опрашивать карту, пока в неё дописываются фильмы
+			executorService.submit(() -> {
+				while (!Thread.currentThread().isInterrupted()) {
+					int max = map.reduceValuesToInt(1_000, Set::size, 0, Integer::max);
+					if (max < 0) {
+						System.out.println("Impossible");
+					}
+				}
+			});
+
+			for (int i = 0; i < 10; i++) {
+				Thread.sleep(1_000);
+				System.out.println("# Actors = " + map.size()
+						+ ", lines = " + tailer.linesIngested()
+						+ ", bytes behind = " + tailer.bytesBehind()
+						+ ", lag = " + tailer.ingestLagMillis() + " ms"
+						+ ", last parse = " + String.format("%.2f ms", tailer.lastParseMillis())
+						+ ", " + String.format("%.0f lines/sec", tailer.linesPerSecond()));
+			}
+		} finally {
+			tailer.close();
+			executorService.shutdownNow();
+		}
+	}
+}
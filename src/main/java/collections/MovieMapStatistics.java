@@ -0,0 +1,180 @@
+package collections;
+
+import collections.model.Actor;
+import collections.model.Movie;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Статистика по карте актёр -> фильмы, посчитанная за один параллельный проход.
+ *
+ * В ConcurrentHashMapParallelPatterns карта пробегается три раза: reduce() за максимумом, search() за актёром
+ * с этим максимумом и ещё один reduce() за суммой. Каждый проход - это чтение всей карты из памяти, т.е. на
+ * больших картах три прохода стоят втрое дороже одного. Здесь же карта делится на куски через
+ * spliterator().trySplit() (так же её делят и встроенные bulk-операции ConcurrentHashMap), каждый кусок
+ * обрабатывается своей задачей ForkJoin со своим аккумулятором, а результаты сливаются через merge().
+ * Аккумулятор один на задачу, но без промежуточных объектов не обходится: сплитератор entrySet() у ConcurrentHashMap
+ * создаёт MapEntry на каждую пару ключ-значение (короткоживущий, он умирает в молодом поколении).
+ *
+ * Порог параллелизма берём не константой (10 в примере - это фактически "всегда параллельно", даже когда
+ * накладные расходы на задачи больше самой работы), а из размера карты и количества ядер.
+ */
+public class MovieMapStatistics {
+
+	/**
+	 * Корзина i гистограммы содержит актёров, у которых количество фильмов в [2^i, 2^(i+1)), корзина 0 - ещё и 0 фильмов.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 32;
+
+	private static final long SEQUENTIAL_THRESHOLD = 10_000;
+	private static final long MIN_TASK_SIZE = 1_000;
+	private static final int TASKS_PER_CORE = 4;
+
+	private long count;
+	private long sum;
+	private int min = Integer.MAX_VALUE;
+	private int max = Integer.MIN_VALUE;
+	private Actor mostSeenActor;
+	private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+	/**
+	 * Порог для bulk-операций ConcurrentHashMap (и для задач ниже): примерно столько элементов обрабатывает одна задача.
+	 * Маленькие карты (и одноядерные машины) обрабатываем последовательно, большие - делим на несколько задач на ядро,
+	 * чтобы ядра, закончившие раньше, могли украсть работу у остальных.
+	 */
+	public static long parallelismThreshold(long size, int cores) {
+		if (cores <= 1 || size < SEQUENTIAL_THRESHOLD) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(MIN_TASK_SIZE, size / ((long) cores * TASKS_PER_CORE));
+	}
+
+	public static long parallelismThreshold(Map<?, ?> map) {
+		return parallelismThreshold(map.size(), ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	public static MovieMapStatistics of(ConcurrentHashMap<Actor, Set<Movie>> map) {
+		return of(map, parallelismThreshold(map));
+	}
+
+	/**
+	 * То же с заданным порогом: Long.MAX_VALUE - один последовательный проход без разбиения на задачи.
+	 */
+	public static MovieMapStatistics of(ConcurrentHashMap<Actor, Set<Movie>> map, long threshold) {
+		return ForkJoinPool.commonPool().invoke(new StatisticsTask(map.entrySet().spliterator(), threshold));
+	}
+
+	void accept(Actor actor, int movies) {
+		count++;
+		sum += movies;
+		if (movies < min) {
+			min = movies;
+		}
+		if (movies > max) {
+			max = movies;
+			mostSeenActor = actor;
+		}
+		histogram[bucket(movies)]++;
+	}
+
+	MovieMapStatistics merge(MovieMapStatistics other) {
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		if (other.max > max) {
+			max = other.max;
+			mostSeenActor = other.mostSeenActor;
+		}
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+			histogram[i] += other.histogram[i];
+		}
+		return this;
+	}
+
+	private static int bucket(int movies) {
+		return movies <= 1 ? 0 : 31 - Integer.numberOfLeadingZeros(movies);
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public long sum() {
+		return sum;
+	}
+
+	public int min() {
+		return count == 0 ? 0 : min;
+	}
+
+	public int max() {
+		return count == 0 ? 0 : max;
+	}
+
+	public Actor mostSeenActor() {
+		return mostSeenActor;
+	}
+
+	public double mean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	public long[] histogram() {
+		return histogram.clone();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("MovieMapStatistics{count=" + count + ", sum=" + sum
+				+ ", min=" + min() + ", max=" + max() + ", mean=" + String.format("%.2f", mean())
+				+ ", mostSeenActor=" + mostSeenActor + ", histogram=[");
+		int last = HISTOGRAM_BUCKETS - 1;
+		while (last > 0 && histogram[last] == 0) {
+			last--;
+		}
+		for (int i = 0; i <= last; i++) {
+			builder.append(i == 0 ? "" : ", ").append(i == 0 ? 0 : 1 << i).append("+:").append(histogram[i]);
+		}
+		return builder.append("]}").toString();
+	}
+
+	private static class StatisticsTask extends RecursiveTask<MovieMapStatistics> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Spliterator<Map.Entry<Actor, Set<Movie>>> spliterator;
+		private final long threshold;
+		private StatisticsTask next;
+
+		StatisticsTask(Spliterator<Map.Entry<Actor, Set<Movie>>> spliterator, long threshold) {
+			this.spliterator = spliterator;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected MovieMapStatistics compute() {
+			StatisticsTask forked = null;
+			Spliterator<Map.Entry<Actor, Set<Movie>>> split;
+			// отщепляем половины, пока кусок больше порога; себе оставляем последнюю
+			while (spliterator.estimateSize() > threshold && (split = spliterator.trySplit()) != null) {
+				StatisticsTask task = new StatisticsTask(split, threshold);
+				task.next = forked;
+				forked = task;
+				task.fork();
+			}
+
+			MovieMapStatistics statistics = new MovieMapStatistics();
+			spliterator.forEachRemaining(entry -> statistics.accept(entry.getKey(), entry.getValue().size()));
+
+			for (StatisticsTask task = forked; task != null; task = task.next) {
+				statistics.merge(task.join());
+			}
+			return statistics;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package collections;
+
+import collections.model.Actor;
+import collections.model.Movie;
+import collections.model.MovieReader;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Поисковый индекс для type-ahead: поиск подстроки в Movie.title() и автодополнение имени актёра по префиксу.
+ *
+ * Названия: триграммный инвертированный индекс. Каждое (нормализованное) название режется на все подстроки длины 3,
+ * для каждой триграммы хранится отсортированный int[] номеров фильмов (posting list). Запрос режется на триграммы так же,
+ * списки пересекаются начиная с самого короткого, а оставшиеся кандидаты проверяются настоящим contains() - триграммы
+ * могут совпасть и без совпадения подстроки. Если самый короткий список длинный, он делится на куски, и куски
+ * пересекаются с остальными списками параллельно (остальные списки общие, только читаются).
+ *
+ * Имена: отсортированный массив ключей "фамилия имя" и "имя фамилия", поиск префикса - двоичный поиск нижней границы
+ * и проход вперёд, пока ключи начинаются с префикса. Ключи не уникальны: у разных актёров после нормализации ключ
+ * может совпасть ("Müller" и "Muller"), тогда в массиве несколько пар с одним ключом, по одной на актёра.
+ *
+ * И названия, и имена, и запросы проходят одну и ту же нормализацию fold(): нижний регистр и снятие диакритики для
+ * Latin-1 (файл у нас в ISO-8859-1), т.е. "Müller" находится по "mull", а "Æon" - по "aeon".
+ *
+ * Индекс целиком неизменяемый и публикуется через volatile-ссылку. rebuild() строит новый индекс в стороне и одной
+ * записью подменяет старый, поэтому читатели никогда не блокируются и не видят наполовину построенный индекс.
+ */
+public class MovieSearchIndex {
+
+	private static final int PARALLEL_INTERSECTION = 4_096;
+	private static final String[] LATIN_1_FOLDING = new String[256];
+
+	static {
+		for (char c = 0; c < 256; c++) {
+			String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+			LATIN_1_FOLDING[c] = decomposed.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+		}
+		LATIN_1_FOLDING['\u00DF'] = "ss";
+		LATIN_1_FOLDING['\u00C6'] = "ae";
+		LATIN_1_FOLDING['\u00E6'] = "ae";
+		LATIN_1_FOLDING['\u00D8'] = "o";
+		LATIN_1_FOLDING['\u00F8'] = "o";
+		LATIN_1_FOLDING['\u00D0'] = "d";
+		LATIN_1_FOLDING['\u00F0'] = "d";
+		LATIN_1_FOLDING['\u00DE'] = "th";
+		LATIN_1_FOLDING['\u00FE'] = "th";
+	}
+
+	private volatile Snapshot snapshot = new Snapshot(Collections.emptyList());
+
+	public static MovieSearchIndex of(Collection<Movie> movies) {
+		MovieSearchIndex index = new MovieSearchIndex();
+		index.rebuild(movies);
+		return index;
+	}
+
+	/**
+	 * Перестраивает индекс. Запросы, которые идут в это время, работают со старой версией.
+	 */
+	public synchronized void rebuild(Collection<Movie> movies) {
+		snapshot = new Snapshot(movies);
+	}
+
+	public List<Movie> searchTitle(String query) {
+		return snapshot.searchTitle(fold(query));
+	}
+
+	public List<Actor> completeActor(String prefix, int limit) {
+		return snapshot.completeActor(fold(prefix), limit);
+	}
+
+	/**
+	 * Нижний регистр и снятие диакритики для Latin-1; остальные символы только приводятся к нижнему регистру.
+	 */
+	public static String fold(String text) {
+		StringBuilder folded = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < 256) {
+				folded.append(LATIN_1_FOLDING[c]);
+			} else {
+				folded.append(Character.toLowerCase(c));
+			}
+		}
+		return folded.toString();
+	}
+
+	private static long trigram(String text, int position) {
+		return ((long) text.charAt(position) << 32) | ((long) text.charAt(position + 1) << 16) | text.charAt(position + 2);
+	}
+
+	private static class Snapshot {
+
+		private final Movie[] movies;
+		private final String[] titles;
+		private final Map<Long, int[]> postings;
+
+		private final String[] nameKeys;
+		private final Actor[] nameActors;
+
+		Snapshot(Collection<Movie> source) {
+			movies = source.toArray(new Movie[0]);
+			titles = new String[movies.length];
+
+			Map<Long, IntList> lists = new HashMap<>();
+			Set<Actor> actors = new HashSet<>();
+			Map<String, List<Actor>> names = new TreeMap<>();
+			for (int id = 0; id < movies.length; id++) {
+				String title = fold(movies[id].title());
+				titles[id] = title;
+				for (int i = 0; i + 3 <= title.length(); i++) {
+					lists.computeIfAbsent(trigram(title, i), t -> new IntList()).addOnce(id);
+				}
+				for (Actor actor : movies[id].actors()) {
+					if (!actors.add(actor)) {
+						continue;
+					}
+					String last = fold(actor.lastName());
+					String first = fold(actor.firstName());
+					names.computeIfAbsent(last + " " + first, key -> new ArrayList<>()).add(actor);
+					names.computeIfAbsent(first + " " + last, key -> new ArrayList<>()).add(actor);
+				}
+			}
+
+			postings = new HashMap<>(lists.size() * 2);
+			lists.forEach((key, list) -> postings.put(key, list.toArray()));
+			nameKeys = new String[actors.size() * 2];
+			nameActors = new Actor[nameKeys.length];
+			int i = 0;
+			for (Map.Entry<String, List<Actor>> name : names.entrySet()) {
+				for (Actor actor : name.getValue()) {
+					nameKeys[i] = name.getKey();
+					nameActors[i++] = actor;
+				}
+			}
+		}
+
+		List<Movie> searchTitle(String query) {
+			if (query.isEmpty()) {
+				return Collections.emptyList();
+			}
+			if (query.length() < 3) {
+				List<Movie> result = new ArrayList<>();
+				for (int id = 0; id < titles.length; id++) {
+					if (titles[id].contains(query)) {
+						result.add(movies[id]);
+					}
+				}
+				return result;
+			}
+
+			List<int[]> lists = new ArrayList<>();
+			for (int i = 0; i + 3 <= query.length(); i++) {
+				int[] list = postings.get(trigram(query, i));
+				if (list == null) {
+					return Collections.emptyList();
+				}
+				lists.add(list);
+			}
+			lists.sort(Comparator.comparingInt(list -> list.length));
+			int[] smallest = lists.get(0);
+			List<int[]> others = lists.subList(1, lists.size());
+
+			int[] candidates;
+			if (smallest.length < PARALLEL_INTERSECTION) {
+				candidates = intersect(smallest, 0, smallest.length, others);
+			} else {
+				int chunks = (smallest.length + PARALLEL_INTERSECTION - 1) / PARALLEL_INTERSECTION;
+				candidates = IntStream.range(0, chunks).parallel()
+						.mapToObj(c -> intersect(smallest, c * PARALLEL_INTERSECTION,
+								Math.min(smallest.length, (c + 1) * PARALLEL_INTERSECTION), others))
+						.flatMapToInt(IntStream::of)
+						.toArray();
+			}
+
+			List<Movie> result = new ArrayList<>();
+			for (int id : candidates) {
+				if (titles[id].contains(query)) {
+					result.add(movies[id]);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Элементы base[from, to), которые есть во всех списках others. Списки отсортированы, поэтому для каждого
+		 * следующего элемента поиск в списке продолжается с того места, где остановился предыдущий.
+		 */
+		private static int[] intersect(int[] base, int from, int to, List<int[]> others) {
+			int[] cursors = new int[others.size()];
+			IntList result = new IntList();
+			candidates:
+			for (int i = from; i < to; i++) {
+				int id = base[i];
+				for (int l = 0; l < cursors.length; l++) {
+					int[] list = others.get(l);
+					int position = Arrays.binarySearch(list, cursors[l], list.length, id);
+					if (position < 0) {
+						cursors[l] = -position - 1;
+						continue candidates;
+					}
+					cursors[l] = position;
+				}
+				result.addOnce(id);
+			}
+			return result.toArray();
+		}
+
+		List<Actor> completeActor(String prefix, int limit) {
+			int low = 0;
+			int high = nameKeys.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (nameKeys[middle].compareTo(prefix) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			Set<Actor> result = new LinkedHashSet<>();
+			for (int i = low; i < nameKeys.length && result.size() < limit && nameKeys[i].startsWith(prefix); i++) {
+				result.add(nameActors[i]);
+			}
+			return new ArrayList<>(result);
+		}
+	}
+
+	private static class IntList {
+
+		private int[] values = new int[4];
+		private int size;
+
+		/**
+		 * Значения приходят по возрастанию, так что повтор может быть только последним элементом.
+		 */
+		void addOnce(int value) {
+			if (size > 0 && values[size - 1] == value) {
+				return;
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+
+		Set<Movie> movies = new MovieReader().readMovies();
+
+		long start = System.nanoTime();
+		MovieSearchIndex index = MovieSearchIndex.of(movies);
+		System.out.println("Index built in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+		Movie[] sample = movies.toArray(new Movie[0]);
+
+		// перестройки индекса в фоне не должны мешать запросам
+		Thread rebuilder = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				index.rebuild(movies);
+			}
+		});
+		rebuilder.setDaemon(true);
+		rebuilder.start();
+
+		int queries = 20_000;
+		long[] titleLatencies = new long[queries];
+		long[] nameLatencies = new long[queries];
+		long found = 0;
+		for (int i = 0; i < queries; i++) {
+			Movie movie = sample[ThreadLocalRandom.current().nextInt(sample.length)];
+			String title = movie.title();
+			int from = ThreadLocalRandom.current().nextInt(Math.max(1, title.length() - 3));
+			String query = title.substring(from, Math.min(title.length(), from + 3 + ThreadLocalRandom.current().nextInt(6)));
+
+			long t = System.nanoTime();
+			found += index.searchTitle(query).size();
+			titleLatencies[i] = System.nanoTime() - t;
+
+			Actor actor = movie.actors().iterator().next();
+			String prefix = actor.lastName().substring(0, Math.min(actor.lastName().length(), 1 + i % 4));
+
+			t = System.nanoTime();
+			found += index.completeActor(prefix, 10).size();
+			nameLatencies[i] = System.nanoTime() - t;
+		}
+		rebuilder.interrupt();
+
+		System.out.println("Results found: " + found);
+		printPercentiles("Title search", titleLatencies);
+		printPercentiles("Actor autocomplete", nameLatencies);
+	}
+
+	private static void printPercentiles(String name, long[] latencies) {
+		Arrays.sort(latencies);
+		int n = latencies.length;
+		System.out.printf("%s: p50 = %.1f us, p95 = %.1f us, p99 = %.1f us, max = %.1f us%n", name,
+				latencies[n / 2] / 1e3, latencies[n * 95 / 100] / 1e3, latencies[n * 99 / 100] / 1e3, latencies[n - 1] / 1e3);
+	}
+}
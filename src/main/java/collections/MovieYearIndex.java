@@ -0,0 +1,86 @@
+package collections;
+
+import collections.model.Actor;
+import collections.model.Movie;
+import collections.model.MovieReader;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс фильмов по году выпуска. Фильмы разложены по партициям - по одной на год, - а партиции лежат в
+ * ConcurrentSkipListMap, отсортированные по году. Запрос "фильмы 1990-1999" - это subMap(1990, 1999), т.е.
+ * трогаются только десять нужных партиций, а не весь Set<Movie> из readMovies().
+ *
+ * Skip list и множества на ConcurrentHashMap.newKeySet() не блокируют читателей, так что индекс можно
+ * пополнять (например, из MovieFileTailer), пока по нему идут запросы. Запрос во время вставки увидит
+ * каждый фильм либо целиком, либо не увидит вовсе.
+ */
+public class MovieYearIndex {
+
+	private final ConcurrentSkipListMap<Integer, Set<Movie>> byYear = new ConcurrentSkipListMap<>();
+
+	public static MovieYearIndex of(Collection<Movie> movies) {
+		MovieYearIndex index = new MovieYearIndex();
+		movies.forEach(index::add);
+		return index;
+	}
+
+	public void add(Movie movie) {
+		byYear.computeIfAbsent(movie.releaseYear(), year -> ConcurrentHashMap.newKeySet()).add(movie);
+	}
+
+	public Set<Movie> moviesOf(int year) {
+		return Collections.unmodifiableSet(byYear.getOrDefault(year, Collections.emptySet()));
+	}
+
+	/**
+	 * Партиции с fromYear по toYear включительно, по возрастанию года.
+	 */
+	public NavigableMap<Integer, Set<Movie>> partitions(int fromYear, int toYear) {
+		if (fromYear > toYear) {
+			return Collections.emptyNavigableMap();
+		}
+		return Collections.unmodifiableNavigableMap(byYear.subMap(fromYear, true, toYear, true));
+	}
+
+	public List<Movie> range(int fromYear, int toYear) {
+		List<Movie> movies = new ArrayList<>();
+		partitions(fromYear, toYear).values().forEach(movies::addAll);
+		return movies;
+	}
+
+	public int count(int fromYear, int toYear) {
+		int count = 0;
+		for (Set<Movie> partition : partitions(fromYear, toYear).values()) {
+			count += partition.size();
+		}
+		return count;
+	}
+
+	public static void main(String[] args) {
+
+		MovieReader reader = new MovieReader();
+		Set<Movie> movies = reader.readMovies();
+
+		MovieYearIndex yearIndex = MovieYearIndex.of(movies);
+
+		long start = System.nanoTime();
+		long scanned = movies.stream().filter(m -> m.releaseYear() >= 1990 && m.releaseYear() <= 1999).count();
+		long scanTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int indexed = yearIndex.count(1990, 1999);
+		long indexTime = System.nanoTime() - start;
+
+		System.out.println("Movies 1990-1999: full scan = " + scanned + " (" + scanTime / 1_000 + " us), index = "
+				+ indexed + " (" + indexTime / 1_000 + " us)");
+
+		ConcurrentHashMap<Actor, Set<Movie>> map = new ConcurrentHashMap<>();
+		TopActorsIndex topActors = new TopActorsIndex(10);
+		reader.addActorsToMap(map, topActors);
+
+		System.out.println("Most prolific actors: " + topActors.top());
+	}
+}
@@ -0,0 +1,363 @@
+package collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченная очередь без блокировок для многих производителей и многих потребителей (bounded MPMC queue
+ * Дмитрия Вьюкова), реализующая BlockingQueue - её можно подставить вместо ArrayBlockingQueue там, где очередь
+ * используется только как очередь (put()/take(), offer()/poll(), drainTo()).
+ *
+ * ArrayBlockingQueue из ProducerConsumer закрыта одним ReentrantLock: любой put() и любой take() стоят в одной
+ * очереди на блокировку, даже если буфер наполовину полон и им нечего делить.
+ *
+ * Здесь у каждой ячейки кольцевого массива есть номер последовательности. Ячейка i свободна для записи номер pos
+ * (позиции растут бесконечно, ячейка - pos % capacity), если её номер равен pos, и готова для чтения, если номер
+ * равен pos + 1. Производитель захватывает позицию одним CAS на tail, пишет элемент и публикует его, выставив
+ * номер pos + 1 (release-запись); потребитель захватывает позицию CAS'ом на head, читает элемент и освобождает
+ * ячейку для следующего круга номером pos + capacity. Производители между собой спорят только за tail,
+ * потребители - за head, друг друга они не ждут вовсе, а проигравший CAS сразу пробует следующую позицию.
+ * Номер меньше ожидаемого значит, что очередь полна (пуста), - offer()/poll() сразу возвращают false/null.
+ *
+ * head и tail лежат в разных объектах с отступами по 64 байта, чтобы не делить одну кэш-линию (false sharing):
+ * иначе каждый CAS производителя выбивал бы линию из кэша потребителей.
+ *
+ * Ёмкость - не меньше 2: при одной ячейке номер "опубликован на позиции pos" (pos + 1) совпадает с номером
+ * "свободна для позиции pos + 1", и второй offer() затёр бы ещё не прочитанный элемент.
+ *
+ * Блокирующие методы (put(), take() и версии с таймаутом) ждут по стратегии WaitStrategy, по умолчанию
+ * WaitStrategy.blocking(). Итератор и toArray() - слабо согласованные снимки. Удаление из середины очереди
+ * (remove(Object), removeAll(), retainAll(), removeIf(), remove() через итератор) не поддерживается и бросает
+ * UnsupportedOperationException: вынуть элемент из чужой ячейки без блокировок, не сломав номера
+ * последовательностей, нельзя.
+ */
+public class MpmcArrayQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	/**
+	 * Счётчик позиции с отступами с обеих сторон, чтобы head и tail гарантированно лежали в разных кэш-линиях.
+	 */
+	@SuppressWarnings("unused")
+	static final class PaddedPosition {
+
+		private static final VarHandle VALUE;
+
+		static {
+			try {
+				VALUE = MethodHandles.lookup().findVarHandle(PaddedPosition.class, "value", long.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private long p01, p02, p03, p04, p05, p06, p07;
+		private volatile long value;
+		private long p11, p12, p13, p14, p15, p16, p17;
+
+		long get() {
+			return value;
+		}
+
+		boolean compareAndSet(long expected, long next) {
+			return VALUE.compareAndSet(this, expected, next);
+		}
+	}
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicLongArray sequences;
+	private final AtomicReferenceArray<E> items;
+	private final PaddedPosition head = new PaddedPosition();
+	private final PaddedPosition tail = new PaddedPosition();
+
+	private final WaitStrategy notFull;
+	private final WaitStrategy notEmpty;
+
+	public MpmcArrayQueue(int capacity) {
+		this(capacity, WaitStrategy::blocking);
+	}
+
+	public MpmcArrayQueue(int capacity, Supplier<WaitStrategy> waitStrategy) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+		}
+		this.capacity = capacity;
+		// для степени двойки индекс ячейки - маска вместо деления
+		this.mask = Integer.bitCount(capacity) == 1 ? capacity - 1 : -1;
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.setPlain(i, i);
+		}
+		this.items = new AtomicReferenceArray<>(capacity);
+		this.notFull = waitStrategy.get();
+		this.notEmpty = waitStrategy.get();
+	}
+
+	private int index(long position) {
+		return mask >= 0 ? (int) (position & mask) : (int) (position % capacity);
+	}
+
+	@Override
+	public boolean offer(E e) {
+		Objects.requireNonNull(e);
+		long position = tail.get();
+		while (true) {
+			int index = index(position);
+			long difference = sequences.getAcquire(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					items.setPlain(index, e);
+					sequences.setRelease(index, position + 1);
+					notEmpty.signal();
+					return true;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				// ячейка ещё не освобождена с прошлого круга - очередь полна
+				return false;
+			} else {
+				// другой производитель уже занял эту позицию
+				position = tail.get();
+			}
+		}
+	}
+
+	@Override
+	public E poll() {
+		long position = head.get();
+		while (true) {
+			int index = index(position);
+			long difference = sequences.getAcquire(index) - (position + 1);
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					E e = items.getPlain(index);
+					items.setPlain(index, null);
+					sequences.setRelease(index, position + capacity);
+					notFull.signal();
+					return e;
+				}
+				position = head.get();
+			} else if (difference < 0) {
+				// ячейка ещё не заполнена - очередь пуста
+				return null;
+			} else {
+				position = head.get();
+			}
+		}
+	}
+
+	@Override
+	public E peek() {
+		while (true) {
+			long position = head.get();
+			int index = index(position);
+			if (sequences.getAcquire(index) != position + 1) {
+				return null;
+			}
+			E e = items.getPlain(index);
+			// если за это время элемент забрали, прочитанное могло относиться уже к следующему кругу
+			if (head.get() == position && e != null) {
+				return e;
+			}
+		}
+	}
+
+	private boolean hasSpace() {
+		long position = tail.get();
+		return sequences.getAcquire(index(position)) - position >= 0;
+	}
+
+	private boolean hasElement() {
+		long position = head.get();
+		return sequences.getAcquire(index(position)) - (position + 1) >= 0;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		while (!offer(e)) {
+			notFull.await(this::hasSpace, false, 0);
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (offer(e)) {
+			return true;
+		}
+		// System.nanoTime() не бесплатен, поэтому срок считаем только когда ждать всё-таки придётся
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!offer(e)) {
+			if (!notFull.await(this::hasSpace, true, deadline)) {
+				return offer(e);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e;
+		while ((e = poll()) == null) {
+			notEmpty.await(this::hasElement, false, 0);
+		}
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = poll();
+		if (e != null) {
+			return e;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while ((e = poll()) == null) {
+			if (!notEmpty.await(this::hasElement, true, deadline)) {
+				return poll();
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public int size() {
+		while (true) {
+			long before = head.get();
+			long currentTail = tail.get();
+			long after = head.get();
+			if (before == after) {
+				return (int) Math.max(0, Math.min(capacity, currentTail - after));
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return !hasElement();
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		int drained = 0;
+		E e;
+		while (drained < maxElements && (e = poll()) != null) {
+			c.add(e);
+			drained++;
+		}
+		return drained;
+	}
+
+	/**
+	 * Не поддерживается (см. описание класса).
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("MpmcArrayQueue does not support removal of arbitrary elements");
+	}
+
+	/**
+	 * Слабо согласованный снимок: элементы, которые были в очереди во время обхода.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<>();
+		long position = head.get();
+		long end = tail.get();
+		for (; position < end; position++) {
+			int index = index(position);
+			E e = items.getPlain(index);
+			if (sequences.getAcquire(index) == position + 1 && e != null) {
+				snapshot.add(e);
+			}
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	// ================================================================================================================
+
+	/**
+	 * Перекладывает items элементов через очередь threads производителями и threads потребителями;
+	 * возвращает миллионы элементов в секунду.
+	 */
+	static double throughput(BlockingQueue<Integer> queue, int threads, int items) throws Exception {
+		int perThread = items / threads;
+		ExecutorService executorService = Executors.newFixedThreadPool(2 * threads);
+		try {
+			List<Callable<Long>> tasks = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				tasks.add(() -> {
+					for (int n = 0; n < perThread; n++) {
+						queue.put(n);
+					}
+					return 0L;
+				});
+				tasks.add(() -> {
+					long sum = 0;
+					for (int n = 0; n < perThread; n++) {
+						sum += queue.take();
+					}
+					return sum;
+				});
+			}
+			long start = System.nanoTime();
+			long sum = 0;
+			for (Future<Long> future : executorService.invokeAll(tasks)) {
+				sum += future.get();
+			}
+			long elapsed = System.nanoTime() - start;
+			if (sum != (long) threads * perThread * (perThread - 1) / 2) {
+				throw new IllegalStateException("Lost or duplicated items: sum = " + sum);
+			}
+			return (double) threads * perThread / elapsed * 1_000;
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 1_024;
+		int items = 2_000_000;
+
+		Map<String, Supplier<BlockingQueue<Integer>>> queues = new LinkedHashMap<>();
+		queues.put("ArrayBlockingQueue", () -> new ArrayBlockingQueue<>(capacity));
+		queues.put("LinkedTransferQueue", LinkedTransferQueue::new);
+		queues.put("MpmcArrayQueue(blocking)", () -> new MpmcArrayQueue<>(capacity));
+		queues.put("MpmcArrayQueue(yielding)", () -> new MpmcArrayQueue<>(capacity, WaitStrategy::yielding));
+
+		System.out.println("Capacity " + capacity + " (LinkedTransferQueue is unbounded), M items/s:");
+		System.out.printf("%-26s", "producers x consumers");
+		for (String name : queues.keySet()) {
+			System.out.printf("%26s", name);
+		}
+		System.out.println();
+		int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			System.out.printf("%-26s", threads + " x " + threads);
+			for (Supplier<BlockingQueue<Integer>> queue : queues.values()) {
+				// лучший из трёх прогонов
+				double best = 0;
+				for (int round = 0; round < 3; round++) {
+					best = Math.max(best, throughput(queue.get(), threads, items));
+				}
+				System.out.printf("%26.2f", best);
+			}
+			System.out.println();
+		}
+	}
+}
@@ -17,6 +17,7 @@ import java.util.concurrent.*;
  * put() - заблокирует очередь, пока не добавится новый элемент.
  *
  * ArrayBlockingQueue - нерасширяемая очередь.
+ * MpmcArrayQueue - тоже нерасширяемая, но без блокировок (см. её описание).
  * ConcurrentLinkedQueue - расширяемая очередь.
  *
  *
@@ -39,7 +40,10 @@ public class ProducerConsumer {
 
 	public static void main(String[] args) throws InterruptedException {
 
-		BlockingQueue<String> queue = new ArrayBlockingQueue<>(50);
+		// "mpmc" в аргументах - та же программа на очереди без блокировок
+		BlockingQueue<String> queue = args.length > 0 && args[0].equals("mpmc")
+				? new MpmcArrayQueue<>(50)
+				: new ArrayBlockingQueue<>(50);
 
 		class Consumer implements Callable<String> {
 
@@ -0,0 +1,108 @@
+package collections;
+
+import collections.model.Actor;
+import collections.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Top-K самых "плодовитых" актёров (по количеству фильмов), который поддерживается по ходу вставок, а не
+ * вычисляется полным проходом по карте.
+ *
+ * Читатели видят неизменяемый отсортированный массив через volatile-ссылку - никаких блокировок на чтение.
+ * Писатель, которому есть что поменять, под монитором строит новый массив и публикует его (copy-on-write, как в
+ * CopyOnWriteArrayList). Подавляющее большинство обновлений в top-K не попадает: если top уже заполнен и у актёра
+ * фильмов не больше, чем у последнего в нём, обновление отбрасывается без всякой синхронизации.
+ *
+ * Рассчитано на то, что фильмы у актёров только добавляются (как в MovieReader.addActorsToMap()), т.е. число фильмов
+ * не уменьшается и каждое его изменение проходит через update().
+ */
+public class TopActorsIndex implements BiConsumer<Actor, Set<Movie>> {
+
+	public static class Entry {
+
+		private final Actor actor;
+		private final int movies;
+
+		Entry(Actor actor, int movies) {
+			this.actor = actor;
+			this.movies = movies;
+		}
+
+		public Actor actor() {
+			return actor;
+		}
+
+		public int movies() {
+			return movies;
+		}
+
+		@Override
+		public String toString() {
+			return actor.firstName() + " " + actor.lastName() + " (" + movies + ")";
+		}
+	}
+
+	private final int k;
+	private final Object lock = new Object();
+	private volatile Entry[] top = new Entry[0];
+
+	public TopActorsIndex(int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+		this.k = k;
+	}
+
+	@Override
+	public void accept(Actor actor, Set<Movie> movies) {
+		update(actor, movies.size());
+	}
+
+	public void update(Actor actor, int movies) {
+		Entry[] current = top;
+		if (current.length == k && movies <= current[k - 1].movies) {
+			return;
+		}
+
+		synchronized (lock) {
+			current = top;
+			if (current.length == k && movies <= current[k - 1].movies) {
+				return;
+			}
+			List<Entry> next = new ArrayList<>(current.length + 1);
+			for (Entry entry : current) {
+				if (!entry.actor.equals(actor)) {
+					next.add(entry);
+				} else if (entry.movies >= movies) {
+					// два писателя одного актёра могли прийти сюда не по порядку: число фильмов не уменьшается,
+					// так что меньшее - устаревшее
+					return;
+				}
+			}
+			int position = 0;
+			while (position < next.size() && next.get(position).movies >= movies) {
+				position++;
+			}
+			next.add(position, new Entry(actor, movies));
+			top = next.subList(0, Math.min(k, next.size())).toArray(new Entry[0]);
+		}
+	}
+
+	/**
+	 * Первые n (не больше k) актёров по убыванию количества фильмов.
+	 */
+	public List<Entry> top(int n) {
+		Entry[] current = top;
+		return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(current, Math.min(n, current.length))));
+	}
+
+	public List<Entry> top() {
+		return top(k);
+	}
+}
@@ -0,0 +1,149 @@
+package collections;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Как ждать в блокирующих методах MpmcArrayQueue (put()/take() и версий с таймаутом), когда очередь полна или пуста.
+ *
+ * Сама очередь без блокировок, и ожидание - единственное место, где приходится выбирать между задержкой и
+ * процессором:
+ * - spinning() - крутится в цикле: минимальная задержка пробуждения, но ждущий поток съедает целое ядро;
+ *   годится, только если потоков не больше, чем ядер;
+ * - yielding() - немного крутится, потом уступает процессор (Thread.yield()), потом засыпает на parkNanos()
+ *   с растущей паузой до миллисекунды; сигналы не нужны, поэтому производитель и потребитель ничего не платят;
+ * - blocking() - немного крутится и уступает процессор, потом засыпает на Condition; будят его явно, и то только если кто-то ждёт.
+ *   Подходит, когда потоков больше, чем ядер (как в ProducerConsumer), и по умолчанию.
+ *
+ * Стратегия отвечает за одно направление ожидания, поэтому у очереди их два экземпляра: для "не полна" и "не пуста".
+ */
+public interface WaitStrategy {
+
+	/**
+	 * Ждёт, пока ready не вернёт true. Если timed, ждёт не дольше deadline (по System.nanoTime()).
+	 *
+	 * @return true, если дождались, false - если вышло время
+	 */
+	boolean await(BooleanSupplier ready, boolean timed, long deadline) throws InterruptedException;
+
+	/**
+	 * Вызывается после изменения состояния, которого могут ждать (элемент положили или забрали).
+	 */
+	default void signal() {
+	}
+
+	static WaitStrategy spinning() {
+		return (ready, timed, deadline) -> {
+			while (!ready.getAsBoolean()) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (timed && System.nanoTime() - deadline >= 0) {
+					return false;
+				}
+				Thread.onSpinWait();
+			}
+			return true;
+		};
+	}
+
+	static WaitStrategy yielding() {
+		return (ready, timed, deadline) -> {
+			long pause = 1_000;
+			for (int attempt = 0; !ready.getAsBoolean(); attempt++) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (timed && System.nanoTime() - deadline >= 0) {
+					return false;
+				}
+				if (attempt < 100) {
+					Thread.onSpinWait();
+				} else if (attempt < 200) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(pause);
+					pause = Math.min(pause * 2, TimeUnit.MILLISECONDS.toNanos(1));
+				}
+			}
+			return true;
+		};
+	}
+
+	static WaitStrategy blocking() {
+		return new Blocking();
+	}
+
+	final class Blocking implements WaitStrategy {
+
+		private static final int SPINS = 100;
+		private static final int YIELDS = 10;
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition changed = lock.newCondition();
+		private volatile int waiters;
+
+		private Blocking() {
+		}
+
+		@Override
+		public boolean await(BooleanSupplier ready, boolean timed, long deadline) throws InterruptedException {
+			for (int i = 0; i < SPINS + YIELDS; i++) {
+				if (ready.getAsBoolean()) {
+					return true;
+				}
+				if (i < SPINS) {
+					Thread.onSpinWait();
+				} else {
+					Thread.yield();
+				}
+			}
+			lock.lockInterruptibly();
+			try {
+				// сначала объявляем себя ждущим, потом проверяем условие: signal() делает наоборот, так что
+				// хотя бы один из двоих увидит изменение другого, и сигнал не потеряется
+				waiters++;
+				VarHandle.fullFence();
+				try {
+					while (!ready.getAsBoolean()) {
+						if (!timed) {
+							changed.await();
+						} else {
+							long nanos = deadline - System.nanoTime();
+							if (nanos <= 0) {
+								return false;
+							}
+							changed.awaitNanos(nanos);
+						}
+					}
+					return true;
+				} finally {
+					waiters--;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void signal() {
+			// публикация элемента в очереди - release-запись, а не volatile; без барьера чтение waiters могло бы
+			// выполниться раньше неё
+			VarHandle.fullFence();
+			if (waiters > 0) {
+				// одно изменение - один разбуженный: signalAll() будил бы всех ждущих ради одного элемента (или
+				// одной свободной ячейки); отменённых по таймауту Condition пропускает сама
+				lock.lock();
+				try {
+					changed.signal();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package collections.aggregation;
+
+/**
+ * Сливаемый аккумулятор для GroupBy: как Collector, но без лишнего.
+ *
+ * Каждая задача ForkJoin заводит свои аккумуляторы через create() и наполняет их через add(), не делясь ими
+ * ни с кем, - поэтому add() может мутировать аккумулятор без синхронизации. Результаты подзадач объединяются
+ * через merge(), и только в конце finish() превращает аккумулятор в результат. Чтобы разбиение на задачи не
+ * влияло на ответ, merge() должен быть ассоциативным и коммутативным (порядок слияния зависит от размеров
+ * карт), а create() - нейтральным элементом для него.
+ */
+public interface Aggregator<T, A, R> {
+
+	A create();
+
+	void add(A accumulator, T item);
+
+	/**
+	 * Объединяет два аккумулятора; может вернуть один из них, изменённый.
+	 */
+	A merge(A left, A right);
+
+	R finish(A accumulator);
+}
@@ -0,0 +1,147 @@
+package collections.aggregation;
+
+import java.util.Collection;
+import java.util.IntSummaryStatistics;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Готовые аккумуляторы для GroupBy.
+ */
+public final class Aggregators {
+
+	private Aggregators() {
+	}
+
+	public static <T> Aggregator<T, long[], Long> count() {
+		return sum(item -> 1L);
+	}
+
+	public static <T> Aggregator<T, long[], Long> sum(ToLongFunction<? super T> value) {
+		return new Aggregator<>() {
+			@Override
+			public long[] create() {
+				return new long[1];
+			}
+
+			@Override
+			public void add(long[] sum, T item) {
+				sum[0] += value.applyAsLong(item);
+			}
+
+			@Override
+			public long[] merge(long[] left, long[] right) {
+				left[0] += right[0];
+				return left;
+			}
+
+			@Override
+			public Long finish(long[] sum) {
+				return sum[0];
+			}
+		};
+	}
+
+	/**
+	 * Количество, сумма, минимум, максимум и среднее за один проход.
+	 */
+	public static <T> Aggregator<T, IntSummaryStatistics, IntSummaryStatistics> summarizing(ToIntFunction<? super T> value) {
+		return new Aggregator<>() {
+			@Override
+			public IntSummaryStatistics create() {
+				return new IntSummaryStatistics();
+			}
+
+			@Override
+			public void add(IntSummaryStatistics statistics, T item) {
+				statistics.accept(value.applyAsInt(item));
+			}
+
+			@Override
+			public IntSummaryStatistics merge(IntSummaryStatistics left, IntSummaryStatistics right) {
+				left.combine(right);
+				return left;
+			}
+
+			@Override
+			public IntSummaryStatistics finish(IntSummaryStatistics statistics) {
+				return statistics;
+			}
+		};
+	}
+
+	public static <T> Aggregator<T, int[], Integer> min(ToIntFunction<? super T> value) {
+		return extremum(value, Integer.MAX_VALUE, Math::min);
+	}
+
+	public static <T> Aggregator<T, int[], Integer> max(ToIntFunction<? super T> value) {
+		return extremum(value, Integer.MIN_VALUE, Math::max);
+	}
+
+	private static <T> Aggregator<T, int[], Integer> extremum(ToIntFunction<? super T> value, int identity,
+			IntBinaryOperator operator) {
+		return new Aggregator<>() {
+			@Override
+			public int[] create() {
+				return new int[]{identity};
+			}
+
+			@Override
+			public void add(int[] extremum, T item) {
+				extremum[0] = operator.applyAsInt(extremum[0], value.applyAsInt(item));
+			}
+
+			@Override
+			public int[] merge(int[] left, int[] right) {
+				left[0] = operator.applyAsInt(left[0], right[0]);
+				return left;
+			}
+
+			@Override
+			public Integer finish(int[] extremum) {
+				return extremum[0];
+			}
+		};
+	}
+
+	/**
+	 * Приблизительное число различных значений value (см. HyperLogLog).
+	 */
+	public static <T> Aggregator<T, HyperLogLog, Long> distinctCount(Function<? super T, ?> value) {
+		return distinct((hll, item) -> hll.add(value.apply(item)));
+	}
+
+	/**
+	 * Приблизительное число различных элементов во всех коллекциях values, например различных актёров за десятилетие.
+	 */
+	public static <T> Aggregator<T, HyperLogLog, Long> distinctCountOfEach(Function<? super T, ? extends Collection<?>> values) {
+		return distinct((hll, item) -> values.apply(item).forEach(hll::add));
+	}
+
+	private static <T> Aggregator<T, HyperLogLog, Long> distinct(BiConsumer<HyperLogLog, T> adder) {
+		return new Aggregator<>() {
+			@Override
+			public HyperLogLog create() {
+				return new HyperLogLog();
+			}
+
+			@Override
+			public void add(HyperLogLog hll, T item) {
+				adder.accept(hll, item);
+			}
+
+			@Override
+			public HyperLogLog merge(HyperLogLog left, HyperLogLog right) {
+				return left.merge(right);
+			}
+
+			@Override
+			public Long finish(HyperLogLog hll) {
+				return hll.estimate();
+			}
+		};
+	}
+}
@@ -0,0 +1,159 @@
+package collections.aggregation;
+
+import collections.MovieMapStatistics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Параллельная группировка с агрегацией на RecursiveTask: "фильмов по годам", "актёров по десятилетиям",
+ * "фильмов на актёра" без ручных последовательных циклов вроде MovieReader.addActorsToMap().
+ *
+ * Map<Integer, Long> perYear = GroupBy.of(movies, Movie::releaseYear, Aggregators.count());
+ * Map<Actor, Long> perActor = GroupBy.ofEach(movies, Movie::actors, Aggregators.count());
+ *
+ * Массив делится пополам, пока кусок больше порога, а у потока есть кому отдать работу (см. GroupTask).
+ * Каждый лист заводит свою HashMap ключ -> аккумулятор, поэтому общего изменяемого состояния у подзадач нет:
+ * ни блокировок, ни ConcurrentHashMap, ни CAS на горячем пути. При слиянии меньшая карта вливается в большую через
+ * Aggregator.merge(). В отличие от Collectors.groupingBy() на параллельном стриме, где промежуточные карты создаёт
+ * и сливает каждый узел разбиения, здесь задач не больше, чем нужно, чтобы загрузить ядра.
+ */
+public final class GroupBy {
+
+	/**
+	 * Если в очереди потока больше стольких неукраденных задач, дальше не делим - остальные ядра и так заняты.
+	 */
+	private static final int SURPLUS_TASKS = 3;
+
+	private GroupBy() {
+	}
+
+	public static <T, K, A, R> Map<K, R> of(Collection<? extends T> items, Function<? super T, ? extends K> key,
+			Aggregator<? super T, A, R> aggregator) {
+		return run(items.toArray(), grouper(key, aggregator), aggregator, threshold(items.size()));
+	}
+
+	/**
+	 * Как of(), но элемент попадает в группу каждого своего ключа (например, фильм - в группу каждого своего актёра).
+	 */
+	public static <T, K, A, R> Map<K, R> ofEach(Collection<? extends T> items,
+			Function<? super T, ? extends Collection<? extends K>> keys, Aggregator<? super T, A, R> aggregator) {
+		return run(items.toArray(), groupers(keys, aggregator), aggregator, threshold(items.size()));
+	}
+
+	public static <T, K, A, R> Map<K, R> of(T[] items, Function<? super T, ? extends K> key,
+			Aggregator<? super T, A, R> aggregator) {
+		return of(items, key, aggregator, threshold(items.length));
+	}
+
+	public static <T, K, A, R> Map<K, R> ofEach(T[] items, Function<? super T, ? extends Collection<? extends K>> keys,
+			Aggregator<? super T, A, R> aggregator) {
+		return ofEach(items, keys, aggregator, threshold(items.length));
+	}
+
+	/**
+	 * То же с заданным порогом: Long.MAX_VALUE - один последовательный проход без разбиения на задачи.
+	 */
+	public static <T, K, A, R> Map<K, R> of(T[] items, Function<? super T, ? extends K> key,
+			Aggregator<? super T, A, R> aggregator, long threshold) {
+		return run(items, grouper(key, aggregator), aggregator, threshold);
+	}
+
+	public static <T, K, A, R> Map<K, R> ofEach(T[] items, Function<? super T, ? extends Collection<? extends K>> keys,
+			Aggregator<? super T, A, R> aggregator, long threshold) {
+		return run(items, groupers(keys, aggregator), aggregator, threshold);
+	}
+
+	/**
+	 * Порог как у MovieMapStatistics: маленькие массивы и одноядерные машины - последовательно.
+	 */
+	static long threshold(int size) {
+		return MovieMapStatistics.parallelismThreshold(size, ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	private interface Grouper<T, K, A> {
+		void accept(T item, Map<K, A> groups);
+	}
+
+	private static <T, K, A> Grouper<T, K, A> grouper(Function<? super T, ? extends K> key,
+			Aggregator<? super T, A, ?> aggregator) {
+		return (item, groups) -> aggregator.add(groups.computeIfAbsent(key.apply(item), k -> aggregator.create()), item);
+	}
+
+	private static <T, K, A> Grouper<T, K, A> groupers(Function<? super T, ? extends Collection<? extends K>> keys,
+			Aggregator<? super T, A, ?> aggregator) {
+		return (item, groups) -> {
+			for (K key : keys.apply(item)) {
+				aggregator.add(groups.computeIfAbsent(key, k -> aggregator.create()), item);
+			}
+		};
+	}
+
+	private static <T, K, A, R> Map<K, R> run(Object[] items, Grouper<T, K, A> grouper,
+			Aggregator<? super T, A, R> aggregator, long threshold) {
+		Map<K, A> groups = ForkJoinPool.commonPool().invoke(
+				new GroupTask<>(items, 0, items.length, Math.max(1, threshold), grouper, aggregator));
+		Map<K, R> result = new HashMap<>(groups.size() * 4 / 3 + 1);
+		groups.forEach((key, accumulator) -> result.put(key, aggregator.finish(accumulator)));
+		return result;
+	}
+
+	private static class GroupTask<T, K, A> extends RecursiveTask<Map<K, A>> {
+
+		private static final long serialVersionUID = 1L;
+
+		// Object[]: сюда попадает и toArray() коллекции; элементы - всегда T, проверено сигнатурами GroupBy
+		private final Object[] items;
+		private final int from;
+		private final int to;
+		private final long threshold;
+		private final Grouper<T, K, A> grouper;
+		private final Aggregator<? super T, A, ?> aggregator;
+
+		GroupTask(Object[] items, int from, int to, long threshold, Grouper<T, K, A> grouper,
+				Aggregator<? super T, A, ?> aggregator) {
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+			this.grouper = grouper;
+			this.aggregator = aggregator;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected Map<K, A> compute() {
+			// делим, пока кусок больше порога и пока собственные задачи потока разбирают другие ядра:
+			// если их никто не крадёт, дробить дальше - только плодить карты для слияния
+			if (to - from > threshold && ForkJoinTask.getSurplusQueuedTaskCount() <= SURPLUS_TASKS) {
+				int middle = (from + to) >>> 1;
+				GroupTask<T, K, A> left = new GroupTask<>(items, from, middle, threshold, grouper, aggregator);
+				left.fork();
+				Map<K, A> right = new GroupTask<>(items, middle, to, threshold, grouper, aggregator).compute();
+				return merge(left.join(), right);
+			}
+			Map<K, A> groups = new HashMap<>();
+			for (int i = from; i < to; i++) {
+				grouper.accept((T) items[i], groups);
+			}
+			return groups;
+		}
+
+		private Map<K, A> merge(Map<K, A> left, Map<K, A> right) {
+			if (left.size() < right.size()) {
+				Map<K, A> swap = left;
+				left = right;
+				right = swap;
+			}
+			for (Map.Entry<K, A> entry : right.entrySet()) {
+				left.merge(entry.getKey(), entry.getValue(), aggregator::merge);
+			}
+			return left;
+		}
+	}
+}
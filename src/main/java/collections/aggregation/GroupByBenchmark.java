@@ -0,0 +1,103 @@
+package collections.aggregation;
+
+import collections.model.Actor;
+import collections.model.Movie;
+import collections.model.MovieReader;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * GroupBy против Collectors.groupingBy() на последовательном и параллельном стримах, на трёх группировках:
+ * фильмы по году, статистика и различные актёры по десятилетию, фильмы на актёра.
+ *
+ * Фильмов в файле немного, поэтому набор повторяется copies раз (по умолчанию 50): группы и различные актёры
+ * от этого не меняются, меняется только объём работы. Различных актёров стримы считают точно (через множества),
+ * GroupBy - приблизительно (HyperLogLog), и ошибка оценки печатается рядом.
+ */
+public class GroupByBenchmark {
+
+	private static int decade(Movie movie) {
+		return movie.releaseYear() / 10 * 10;
+	}
+
+	static <R> R measure(String name, Callable<R> task) throws Exception {
+		R result = task.call();
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			result = task.call();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("  %-50s %10.2f ms%n", name, best / 1e6);
+		return result;
+	}
+
+	static void check(Map<?, ?> expected, Map<?, ?> actual) {
+		if (!expected.equals(actual)) {
+			throw new IllegalStateException("Results differ: " + expected.size() + " vs " + actual.size() + " groups");
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int copies = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		Set<Movie> read = new MovieReader().readMovies();
+		Movie[] movies = new Movie[read.size() * copies];
+		for (int i = 0; i < copies; i++) {
+			System.arraycopy(read.toArray(new Movie[0]), 0, movies, i * read.size(), read.size());
+		}
+		List<Movie> list = Arrays.asList(movies);
+		System.out.println(movies.length + " movies (" + read.size() + " x " + copies + "), threshold "
+				+ GroupBy.threshold(movies.length));
+
+		System.out.println("Movies per year");
+		Map<Integer, Long> expected = measure("stream().collect(groupingBy(counting()))", () -> list.stream()
+				.collect(Collectors.groupingBy(Movie::releaseYear, Collectors.counting())));
+		check(expected, measure("parallelStream().collect(groupingBy(...))", () -> list.parallelStream()
+				.collect(Collectors.groupingBy(Movie::releaseYear, Collectors.counting()))));
+		check(expected, measure("GroupBy sequential", () -> GroupBy.of(movies, Movie::releaseYear,
+				Aggregators.count(), Long.MAX_VALUE)));
+		check(expected, measure("GroupBy parallel", () -> GroupBy.of(movies, Movie::releaseYear,
+				Aggregators.count())));
+
+		System.out.println("Cast size statistics and distinct actors per decade");
+		Map<Integer, Integer> distinct = measure("stream().collect(groupingBy(...)) (exact)", () -> list.stream()
+				.collect(Collectors.groupingBy(GroupByBenchmark::decade, TreeMap::new,
+						Collectors.flatMapping(movie -> movie.actors().stream(),
+								Collectors.collectingAndThen(Collectors.toSet(), Set::size)))));
+		measure("parallelStream().collect(groupingBy(...)) (exact)", () -> list.parallelStream()
+				.collect(Collectors.groupingBy(GroupByBenchmark::decade, TreeMap::new,
+						Collectors.flatMapping(movie -> movie.actors().stream(),
+								Collectors.collectingAndThen(Collectors.toSet(), Set::size)))));
+		measure("GroupBy sequential (HyperLogLog)", () -> GroupBy.of(movies, GroupByBenchmark::decade,
+				Aggregators.distinctCountOfEach(Movie::actors), Long.MAX_VALUE));
+		Map<Integer, Long> estimated = measure("GroupBy parallel (HyperLogLog)",
+				() -> GroupBy.of(movies, GroupByBenchmark::decade, Aggregators.distinctCountOfEach(Movie::actors)));
+		Map<Integer, IntSummaryStatistics> cast = measure("GroupBy parallel (cast size statistics)",
+				() -> GroupBy.of(movies, GroupByBenchmark::decade, Aggregators.summarizing(movie -> movie.actors().size())));
+		System.out.printf("  %-8s %8s %10s %10s %8s %8s %8s%n", "decade", "movies", "actors", "estimate", "error",
+				"cast min", "cast max");
+		for (Map.Entry<Integer, Integer> entry : distinct.entrySet()) {
+			long estimate = estimated.get(entry.getKey());
+			IntSummaryStatistics statistics = cast.get(entry.getKey());
+			System.out.printf("  %-8d %8d %10d %10d %7.2f%% %8d %8d%n", entry.getKey(), statistics.getCount(),
+					entry.getValue(), estimate, 100.0 * (estimate - entry.getValue()) / entry.getValue(),
+					statistics.getMin(), statistics.getMax());
+		}
+
+		System.out.println("Movies per actor");
+		Map<Actor, Long> perActor = measure("stream().flatMap().collect(groupingBy(...))", () -> list.stream()
+				.flatMap(movie -> movie.actors().stream())
+				.collect(Collectors.groupingBy(actor -> actor, Collectors.counting())));
+		check(perActor, measure("parallelStream().flatMap().collect(...)", () -> list.parallelStream()
+				.flatMap(movie -> movie.actors().stream())
+				.collect(Collectors.groupingBy(actor -> actor, Collectors.counting()))));
+		check(perActor, measure("GroupBy.ofEach sequential", () -> GroupBy.ofEach(movies, Movie::actors,
+				Aggregators.count(), Long.MAX_VALUE)));
+		check(perActor, measure("GroupBy.ofEach parallel", () -> GroupBy.ofEach(movies, Movie::actors,
+				Aggregators.count())));
+		System.out.println(perActor.size() + " actors");
+	}
+}
@@ -7,6 +7,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -15,22 +16,7 @@ public class MovieReader {
     public Set<Movie> readMovies() {
         try (Stream<String> lines = Files.lines(Paths.get("files/movies-mpaa.txt"), StandardCharsets.ISO_8859_1)) {
 
-            Set<Movie> movies = lines.map(
-                    (String line) -> {
-                        String[] elements = line.split("/");
-                        String title = extractTitle(elements[0]);
-                        String releaseYear = extractReleaseYear(elements[0]);
-
-                        Movie movie = new Movie(title, Integer.parseInt(releaseYear));
-
-                        Arrays.stream(elements)
-                                .skip(1)
-                                .map(MovieReader::extractActor)
-                                .forEach(movie::addActor);
-
-                        return movie;
-                    }
-            ).collect(Collectors.toSet());
+            Set<Movie> movies = lines.map(MovieReader::parseMovie).collect(Collectors.toSet());
 
             return movies;
 
@@ -42,15 +28,43 @@ public class MovieReader {
     }
     
     public void addActorsToMap(Map<Actor, Set<Movie>> map) {
+    	addActorsToMap(map, (actor, movies) -> { });
+    }
+
+    /**
+     * То же, что и addActorsToMap(map), но после каждой вставки сообщает onInsert актёра и его текущие фильмы -
+     * так вторичные индексы (например, TopActorsIndex) обновляются по ходу загрузки, без отдельного прохода по карте.
+     */
+    public void addActorsToMap(Map<Actor, Set<Movie>> map, BiConsumer<Actor, Set<Movie>> onInsert) {
     	
     	Set<Movie> movies = readMovies();
     	for (Movie movie : movies) {
     		for (Actor actor : movie.actors()) {
-    			map.computeIfAbsent(actor, a -> new HashSet<>()).add(movie);
+    			Set<Movie> filmography = map.computeIfAbsent(actor, a -> new HashSet<>());
+    			filmography.add(movie);
+    			onInsert.accept(actor, filmography);
     		}
     	}
     }
 
+    /**
+     * Разбирает одну строку файла в формате movies-mpaa.txt: "Title (Year)/Last, First/Last, First/..."
+     */
+    public static Movie parseMovie(String line) {
+        String[] elements = line.split("/");
+        String title = extractTitle(elements[0]);
+        String releaseYear = extractReleaseYear(elements[0]);
+
+        Movie movie = new Movie(title, Integer.parseInt(releaseYear));
+
+        Arrays.stream(elements)
+                .skip(1)
+                .map(MovieReader::extractActor)
+                .forEach(movie::addActor);
+
+        return movie;
+    }
+
     private static Actor extractActor(String elements) {
         String[] nameElements = elements.split(", ");
         String lastName = extractLastName(nameElements);
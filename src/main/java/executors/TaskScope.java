@@ -0,0 +1,293 @@
+package executors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Область задач (task scope): запускает подзадачи и дожидается их все, но при первой же ошибке отменяет остальные.
+ *
+ * Обычный путь - invokeAll() или submit() в цикле, а потом futures.forEach(future -> future.get()) - ждёт задачи
+ * по порядку: если упала третья, мы узнаем об этом только после того, как закончатся первая и вторая, а остальные
+ * так и будут работать (или висеть в await() до таймаута, как консьюмеры в ProducerConsumerWithLocks).
+ * Здесь первая же ошибка отменяет все подзадачи (cancel(true), т.е. с прерыванием потоков) и сразу будит join().
+ * Время работы при ошибке ограничено первой ошибкой, а не самой медленной задачей.
+ *
+ * try (TaskScope scope = TaskScope.open()) {
+ *     Future<String> user = scope.fork(() -> findUser());
+ *     Future<Integer> order = scope.fork(() -> fetchOrder());
+ *     scope.join();            // все завершились или первая ошибка
+ *     scope.throwIfFailed();   // ExecutionException с первой ошибкой
+ *     use(user.get(), order.get());
+ * }
+ *
+ * close() отменяет всё, что ещё не завершилось, и ждёт, пока тела подзадач действительно выйдут, - так ни одна
+ * подзадача не переживает свою область. Ждёт close() без прерывания (AutoCloseable не советует бросать из него
+ * InterruptedException), флаг прерывания потока при этом сохраняется. Подзадача, которая не реагирует на
+ * прерывание, задержит close().
+ *
+ * Потоки берутся из переданного Executor (например, пула) или, в open(), создаются на каждую подзадачу через
+ * ThreadFactory - на Java 21+ сюда можно передать Thread.ofVirtual().factory().
+ */
+public class TaskScope implements AutoCloseable {
+
+    private static final AtomicInteger SCOPES = new AtomicInteger();
+
+    private final Executor executor;
+    // только незавершённые подзадачи: завершённая удаляет себя в done(), чтобы долгоживущая область их не копила
+    private final Set<Subtask<?>> subtasks = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // подзадачи, чей Future ещё не завершён, и подзадачи, чьё тело ещё выполняется (для close())
+    private int pending;
+    private int running;
+    private volatile boolean shutdown;
+    private boolean closed;
+
+    public TaskScope(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Область, в которой каждая подзадача получает свой новый поток.
+     */
+    public static TaskScope open() {
+        String prefix = "task-scope-" + SCOPES.incrementAndGet() + "-";
+        AtomicInteger threads = new AtomicInteger();
+        return open(runnable -> {
+            Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static TaskScope open(ThreadFactory threadFactory) {
+        return new TaskScope(runnable -> threadFactory.newThread(runnable).start());
+    }
+
+    public <T> Future<T> fork(Callable<? extends T> task) {
+        Subtask<T> subtask = new Subtask<>(task);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Task scope is closed");
+            }
+            pending++;
+            running++;
+        } finally {
+            lock.unlock();
+        }
+        subtasks.add(subtask);
+        try {
+            executor.execute(subtask);
+        } catch (RuntimeException e) {
+            subtask.cancel(false);
+            exited();
+            throw e;
+        }
+        // ошибка могла случиться, пока мы запускали эту подзадачу
+        if (shutdown) {
+            subtask.cancel(true);
+        }
+        return subtask;
+    }
+
+    public Future<?> fork(Runnable task) {
+        return fork(Executors.callable(task));
+    }
+
+    /**
+     * Ждёт, пока все подзадачи завершатся или какая-нибудь из них упадёт (тогда остальные уже отменены).
+     */
+    public void join() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending > 0 && !shutdown) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * То же, но не дольше timeout; по истечении времени отменяет все подзадачи и выбрасывает TimeoutException.
+     */
+    public void join(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (pending > 0 && !shutdown) {
+                if (nanos <= 0) {
+                    shutdown();
+                    throw new TimeoutException("Subtasks did not complete in " + timeout + " " + unit);
+                }
+                nanos = changed.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Первая ошибка подзадачи или null.
+     */
+    public Throwable failure() {
+        return failure.get();
+    }
+
+    public void throwIfFailed() throws ExecutionException {
+        Throwable first = failure.get();
+        if (first != null) {
+            throw new ExecutionException(first);
+        }
+    }
+
+    /**
+     * Отменяет с прерыванием все незавершённые подзадачи; join() возвращается сразу.
+     */
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        for (Subtask<?> subtask : subtasks) {
+            subtask.cancel(true);
+        }
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        shutdown();
+        lock.lock();
+        try {
+            while (running > 0) {
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void completed() {
+        lock.lock();
+        try {
+            if (--pending == 0) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void exited() {
+        lock.lock();
+        try {
+            if (--running == 0) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Subtask<T> extends FutureTask<T> {
+
+        Subtask(Callable<? extends T> task) {
+            super(task::call);
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                exited();
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            super.setException(t);
+            // подзадача, отменённая из-за чужой ошибки, обычно падает с InterruptedException - это не ошибка;
+            // первая настоящая ошибка решает исход: остальные подзадачи больше не нужны
+            if (!isCancelled() && failure.compareAndSet(null, t)) {
+                shutdown();
+            }
+        }
+
+        @Override
+        protected void done() {
+            subtasks.remove(this);
+            completed();
+        }
+    }
+
+    // =================================================================================================================
+
+    /**
+     * Пять задач: четыре работают по две секунды, одна падает через 100 мс.
+     */
+    private static List<Callable<String>> tasks() {
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(() -> {
+                Thread.sleep(2_000);
+                return "done";
+            });
+        }
+        tasks.add(() -> {
+            Thread.sleep(100);
+            throw new IllegalStateException("failed");
+        });
+        return tasks;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(5);
+        try {
+            long start = System.nanoTime();
+            for (Future<String> future : executorService.invokeAll(tasks())) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    System.out.println("invokeAll + get(): " + e.getCause() + " after "
+                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                }
+            }
+
+            start = System.nanoTime();
+            try (TaskScope scope = new TaskScope(executorService)) {
+                for (Callable<String> task : tasks()) {
+                    scope.fork(task);
+                }
+                scope.join();
+                scope.throwIfFailed();
+            } catch (ExecutionException e) {
+                System.out.println("TaskScope:          " + e.getCause() + " after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package loadgen;
+
+/**
+ * Одна операция над проверяемым компонентом (положить в очередь, прочитать из кэша, выполнить задачу в пуле).
+ * OpenLoopGenerator вызывает execute() из нескольких потоков сразу и меряет время каждого вызова.
+ */
+public interface LoadTarget extends AutoCloseable {
+
+	void execute(long sequence) throws Exception;
+
+	/**
+	 * Освобождает потоки и прочее, что компонент запустил для нагрузки. Проверяемых исключений не бросает, так что
+	 * try-with-resources в RateSweep их не ловит.
+	 */
+	@Override
+	default void close() {
+	}
+}
@@ -0,0 +1,160 @@
+package loadgen;
+
+import metrics.LogLinearHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки с открытым циклом (open loop): операции запускаются с заданной частотой по расписанию,
+ * а не "следующая после предыдущей".
+ *
+ * Демо-примеры проекта работают замкнутым циклом: Producer кладёт 50 элементов подряд, Incrementer 1000 раз
+ * увеличивает счётчик. Если система на секунду встала, замкнутый цикл тоже встаёт и просто не отправляет запросы,
+ * которые отправил бы за эту секунду, - в статистику попадает одна медленная операция вместо тысячи задержанных
+ * (coordinated omission, термин Гила Тене). Настоящие клиенты не ждут друг друга.
+ *
+ * Здесь у операции номер i есть запланированное время старта start + i / rate, и задержка считается от него,
+ * а не от фактического старта: если все рабочие потоки заняты и операция стартовала на 10 мс позже, эти 10 мс
+ * ожидания входят в её задержку. Отдельно пишется и время обслуживания (от фактического старта) - разница между
+ * двумя гистограммами и есть та очередь, которую прячет замкнутый цикл.
+ *
+ * При сильной перегрузке отставание от расписания растёт без предела, поэтому операции, до которых очередь
+ * дошла позже, чем через два срока прогона, не выполняются, а в гистограмму задержки идёт их уже набежавшее
+ * ожидание (оценка снизу) - так перегрузка видна в результатах, а прогон не затягивается.
+ */
+public class OpenLoopGenerator {
+
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final int workers;
+
+	public OpenLoopGenerator(int workers) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("workers must be positive: " + workers);
+		}
+		this.workers = workers;
+	}
+
+	public Result run(LoadTarget target, double ratePerSecond, long duration, TimeUnit unit) throws InterruptedException {
+		double interval = 1e9 / ratePerSecond;
+		long durationNanos = unit.toNanos(duration);
+		long operations = Math.max(1, (long) (durationNanos / interval));
+
+		LogLinearHistogram latency = new LogLinearHistogram();
+		LogLinearHistogram service = new LogLinearHistogram();
+		AtomicLong next = new AtomicLong();
+		AtomicLong errors = new AtomicLong();
+		AtomicLong dropped = new AtomicLong();
+		AtomicLong lastEnd = new AtomicLong();
+
+		long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+		long cutoff = start + 2 * durationNanos;
+
+		List<Thread> threads = new ArrayList<>();
+		for (int w = 0; w < workers; w++) {
+			Thread thread = new Thread(() -> {
+				long i;
+				while ((i = next.getAndIncrement()) < operations) {
+					long intended = start + (long) (i * interval);
+					long now = waitUntil(intended);
+					if (now > cutoff) {
+						dropped.incrementAndGet();
+						latency.record(now - intended);
+						continue;
+					}
+					try {
+						target.execute(i);
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+					long end = System.nanoTime();
+					latency.record(end - intended);
+					service.record(end - now);
+					lastEnd.accumulateAndGet(end, Math::max);
+				}
+			}, "load-generator-" + w);
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long completed = operations - dropped.get();
+		long elapsed = Math.max(1, lastEnd.get() - start);
+		double achieved = completed == 0 ? 0 : completed * 1e9 / elapsed;
+		return new Result(ratePerSecond, achieved, latency, service, errors.get(), dropped.get());
+	}
+
+	/**
+	 * Ждёт запланированного момента: паркуется, пока до него далеко, последние ~100 мкс уступает процессор
+	 * в цикле (parkNanos просыпается с опозданием в десятки микросекунд, и это опоздание попало бы в задержку).
+	 * Если момент уже прошёл - возвращается сразу.
+	 */
+	private static long waitUntil(long intended) {
+		long now;
+		while ((now = System.nanoTime()) < intended) {
+			long remaining = intended - now;
+			if (remaining > SPIN_NANOS) {
+				LockSupport.parkNanos(remaining - SPIN_NANOS);
+			} else {
+				Thread.yield();
+			}
+		}
+		return now;
+	}
+
+	public static class Result {
+
+		private final double offeredRate;
+		private final double achievedRate;
+		private final LogLinearHistogram latency;
+		private final LogLinearHistogram service;
+		private final long errors;
+		private final long dropped;
+
+		Result(double offeredRate, double achievedRate, LogLinearHistogram latency, LogLinearHistogram service,
+				long errors, long dropped) {
+			this.offeredRate = offeredRate;
+			this.achievedRate = achievedRate;
+			this.latency = latency;
+			this.service = service;
+			this.errors = errors;
+			this.dropped = dropped;
+		}
+
+		public double offeredRate() {
+			return offeredRate;
+		}
+
+		public double achievedRate() {
+			return achievedRate;
+		}
+
+		/**
+		 * Задержка от запланированного старта (с поправкой на coordinated omission), наносекунды.
+		 */
+		public LogLinearHistogram latency() {
+			return latency;
+		}
+
+		/**
+		 * Время обслуживания от фактического старта, наносекунды.
+		 */
+		public LogLinearHistogram service() {
+			return service;
+		}
+
+		public long errors() {
+			return errors;
+		}
+
+		public long dropped() {
+			return dropped;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package loadgen;
+
+import locks.CacheWithReadWriteLock;
+import locks.TwoLockBoundedQueue;
+import locks.cache.Cache;
+import locks.cache.SegmentedLruCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Ищет "колено" компонента: предлагаемая частота растёт в factor раз за шаг, на каждом шаге OpenLoopGenerator
+ * даёт достигнутую пропускную способность и задержки; печатается кривая пропускная способность - p99.
+ * Пока компонент справляется, достигнутая частота равна предлагаемой; за точкой насыщения очередь растёт без
+ * предела, и задержка улетает на порядки - уже не только хвост, но и медиана. Колено - последний шаг перед этим:
+ * достигнутая частота отстала от предлагаемой больше чем на 10% или медиана стала в KNEE_FACTOR раз больше
+ * наименьшей (и больше миллисекунды). Медиана, а не p99, - потому что p99 на загруженной машине шумит от пауз
+ * планировщика и сборщика мусора, которые к насыщению отношения не имеют.
+ *
+ * На каждый шаг компонент создаётся заново: переполненная на прошлом шаге очередь исказила бы следующий.
+ * Прогон останавливается на втором шаге после колена - дальше кривая уже ничего не добавляет.
+ */
+public class RateSweep {
+
+	private static final double KNEE_FACTOR = 10;
+	private static final long KNEE_MIN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	public static List<OpenLoopGenerator.Result> sweep(String name, Supplier<LoadTarget> component, double startRate,
+			double factor, double maxRate, long stepMillis, int workers) throws InterruptedException {
+
+		OpenLoopGenerator generator = new OpenLoopGenerator(workers);
+		// прогрев JIT, без записи результатов
+		try (LoadTarget warmup = component.get()) {
+			generator.run(warmup, startRate, stepMillis, TimeUnit.MILLISECONDS);
+		}
+
+		System.out.println(name);
+		System.out.printf("%12s %12s %10s %10s %10s %10s %12s %8s%n",
+				"offered/s", "achieved/s", "p50 us", "p99 us", "p99.9 us", "max us", "svc p99 us", "dropped");
+
+		List<OpenLoopGenerator.Result> curve = new ArrayList<>();
+		OpenLoopGenerator.Result knee = null;
+		long baselineP50 = Long.MAX_VALUE;
+		int pastKnee = 0;
+		for (double rate = startRate; rate <= maxRate && pastKnee < 2; rate *= factor) {
+			OpenLoopGenerator.Result result;
+			try (LoadTarget target = component.get()) {
+				result = generator.run(target, rate, stepMillis, TimeUnit.MILLISECONDS);
+			}
+			curve.add(result);
+			System.out.printf("%12.0f %12.0f %10.1f %10.1f %10.1f %10.1f %12.1f %8d%n",
+					result.offeredRate(), result.achievedRate(), result.latency().percentile(50) / 1e3,
+					result.latency().percentile(99) / 1e3, result.latency().percentile(99.9) / 1e3,
+					result.latency().max() / 1e3, result.service().percentile(99) / 1e3, result.dropped());
+
+			long p50 = result.latency().percentile(50);
+			baselineP50 = Math.min(baselineP50, Math.max(1, p50));
+			boolean saturated = result.achievedRate() < 0.9 * result.offeredRate()
+					|| p50 > Math.max(KNEE_FACTOR * baselineP50, KNEE_MIN_NANOS);
+			if (saturated) {
+				pastKnee++;
+			} else if (pastKnee == 0) {
+				knee = result;
+			}
+		}
+		System.out.println(knee == null
+				? "Saturated already at " + (long) startRate + " ops/s"
+				: pastKnee == 0
+				? "No knee below " + (long) maxRate + " ops/s"
+				: String.format("Knee at ~%.0f ops/s (p99 = %.1f us)", knee.achievedRate(), knee.latency().percentile(99) / 1e3));
+		System.out.println();
+		return curve;
+	}
+
+	/**
+	 * Имитация работы потребителя/задачи: занимает процессор на nanos наносекунд.
+	 */
+	static void work(long nanos) {
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end) {
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Очередь с одним потребителем, который тратит consumerNanos на элемент; операция - положить элемент.
+	 */
+	static LoadTarget blockingQueue(BlockingQueue<Long> queue, long consumerNanos) {
+		Thread consumer = new Thread(() -> {
+			try {
+				while (true) {
+					queue.take();
+					work(consumerNanos);
+				}
+			} catch (InterruptedException e) {
+				// конец прогона
+			}
+		}, "queue-consumer");
+		consumer.setDaemon(true);
+		consumer.start();
+		return new LoadTarget() {
+			@Override
+			public void execute(long sequence) throws InterruptedException {
+				queue.put(sequence);
+			}
+
+			@Override
+			public void close() {
+				consumer.interrupt();
+			}
+		};
+	}
+
+	static LoadTarget twoLockQueue(TwoLockBoundedQueue queue, long consumerNanos) {
+		Thread consumer = new Thread(() -> {
+			try {
+				while (true) {
+					queue.take();
+					work(consumerNanos);
+				}
+			} catch (InterruptedException e) {
+				// конец прогона
+			}
+		}, "queue-consumer");
+		consumer.setDaemon(true);
+		consumer.start();
+		return new LoadTarget() {
+			@Override
+			public void execute(long sequence) throws InterruptedException {
+				queue.put((int) sequence);
+			}
+
+			@Override
+			public void close() {
+				consumer.interrupt();
+			}
+		};
+	}
+
+	/**
+	 * Операция - get() (readPercent процентов) или put() ключа из [0, keys).
+	 */
+	static LoadTarget cache(Cache cache, int readPercent, int keys) {
+		for (long key = 0; key < keys; key++) {
+			cache.put(key, Long.toString(key));
+		}
+		return sequence -> {
+			long key = ThreadLocalRandom.current().nextInt(keys);
+			if (ThreadLocalRandom.current().nextInt(100) < readPercent) {
+				cache.get(key);
+			} else {
+				cache.put(key, Long.toString(sequence));
+			}
+		};
+	}
+
+	/**
+	 * Операция - отправить в пул задачу на taskNanos и дождаться её.
+	 */
+	static LoadTarget executor(ExecutorService executorService, long taskNanos) {
+		return new LoadTarget() {
+			@Override
+			public void execute(long sequence) throws Exception {
+				executorService.submit(() -> work(taskNanos)).get();
+			}
+
+			@Override
+			public void close() {
+				executorService.shutdownNow();
+			}
+		};
+	}
+
+	public static void main(String[] args) throws Exception {
+		long stepMillis = args.length > 0 ? Long.parseLong(args[0]) : 1_000;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		long consumerNanos = TimeUnit.MICROSECONDS.toNanos(20);
+
+		Map<String, Supplier<LoadTarget>> components = new LinkedHashMap<>();
+		components.put("ArrayBlockingQueue(1024), consumer 20 us/item",
+				() -> blockingQueue(new ArrayBlockingQueue<>(1_024), consumerNanos));
+		components.put("TwoLockBoundedQueue(1024), consumer 20 us/item",
+				() -> twoLockQueue(new TwoLockBoundedQueue(1_024), consumerNanos));
+		components.put("CacheWithReadWriteLock, 90% reads",
+				() -> cache(new CacheWithReadWriteLock(), 90, 100_000));
+		components.put("SegmentedLruCache, 90% reads",
+				() -> cache(new SegmentedLruCache(100_000), 90, 100_000));
+		components.put("FixedThreadPool(2), 50 us tasks",
+				() -> executor(Executors.newFixedThreadPool(2), TimeUnit.MICROSECONDS.toNanos(50)));
+
+		for (Map.Entry<String, Supplier<LoadTarget>> component : components.entrySet()) {
+			sweep(component.getKey(), component.getValue(), 1_000, 2, 2_048_000, stepMillis, workers);
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package locks;
 
-import java.util.HashMap;
-import java.util.Map;
+import collections.LongObjectHashMap;
+import locks.cache.Cache;
+import locks.profiling.LockProfiler;
+
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -13,16 +15,33 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 /**
  * Что мы тут делаем? Бесконечно добавляем данные в кэш и тут же проверяем, записались ли они.
  * Без синхронизации будут попадаться потерянные данные. Будем использовать ReentrantReadWriteLock.
+ *
+ * Ключи хранятся в LongObjectHashMap, а не в HashMap<Long, String>, и у put()/get() есть перегрузки с long:
+ * Producer передаёт примитивный ключ, и ни поиск, ни вставка не упаковывают его в Long.
+ *
+ * Блокировка обёрнута в LockProfiler: с -Dlocks.profiling=true -Dlocks.profiling.dumpSeconds=1 видно, сколько
+ * потоки ждут и держат блокировки на чтение и на запись.
  */
 
-public class CacheWithReadWriteLock {
+public class CacheWithReadWriteLock implements Cache {
 
-	private Map<Long, String> cache = new HashMap<>();
-	private ReadWriteLock lock = new ReentrantReadWriteLock();
+	private LongObjectHashMap<String> cache = new LongObjectHashMap<>();
+	private ReadWriteLock lock = LockProfiler.wrap("CacheWithReadWriteLock", new ReentrantReadWriteLock());
 	private Lock readLock = lock.readLock();
 	private Lock writeLock = lock.writeLock();
 
+	@Override
 	public String put(Long key, String value) {
+		return put(key.longValue(), value);
+	}
+
+	@Override
+	public String get(Long key) {
+		return get(key.longValue());
+	}
+
+	@Override
+	public String put(long key, String value) {
 		writeLock.lock();
 		try {
 			return cache.put(key, value);
@@ -31,7 +50,8 @@ public class CacheWithReadWriteLock {
 		}
 	}
 	
-	public String get(Long key) {
+	@Override
+	public String get(long key) {
 		readLock.lock();
 		try {
 			return cache.get(key);
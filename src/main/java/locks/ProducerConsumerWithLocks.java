@@ -1,5 +1,8 @@
 package locks;
 
+import executors.TaskScope;
+import locks.profiling.LockProfiler;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
@@ -45,7 +48,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * Для демонстрации гибкости RL представим ситуацию, когда продюсер падает с ошибкой (здесь для этого
  * намеренно сделано деление на ноль) и ничего не производит. Соответственно ни один из консьюмеров
  * не начинают работу и программа виснет. Для решения этой проблемы мы можем сделать так, чтобы
- * консьюмер ждал некоторое время, и, если ничего не происходит, выбрасывал исключение.
+ * консьюмер ждал некоторое время, и, если ничего не происходит, выбрасывал исключение. А чтобы не ждать и этого
+ * времени, задачи запускаются в TaskScope: первая же ошибка продюсера отменяет все остальные задачи.
+ *
+ * Запуск с -Dlocks.profiling=true в конце печатает, сколько потоки ждали блокировку, держали её и стояли в await().
  */
 
 public class ProducerConsumerWithLocks {
@@ -54,7 +60,7 @@ public class ProducerConsumerWithLocks {
 
 		List<Integer> buffer = new ArrayList<>();
 
-		Lock lock = new ReentrantLock();
+		Lock lock = LockProfiler.wrap("ProducerConsumerWithLocks", new ReentrantLock());
 		Condition isEmpty = lock.newCondition();
 		Condition isFull = lock.newCondition();
 
@@ -121,26 +127,43 @@ public class ProducerConsumerWithLocks {
 		producersAndConsumers.addAll(producers);
 		producersAndConsumers.addAll(consumers);
 
+		// TaskScope вместо invokeAll() + future.get() по порядку: первое же деление на ноль отменяет остальные задачи,
+		// и консьюмеры не досиживают в await() до своего таймаута
 		ExecutorService executorService = Executors.newFixedThreadPool(8);
-		try {
-			List<Future<String>> futures = executorService.invokeAll(producersAndConsumers);
-
-			futures.forEach(
-					future -> {
-						try {
-							System.out.println(future.get());
-						} catch (InterruptedException | ExecutionException e) {
-							System.out.println("Exception: " + e.getMessage());
-						}
-					});
+		long start = System.nanoTime();
+		try (TaskScope scope = new TaskScope(executorService)) {
+			List<Future<String>> futures = new ArrayList<>();
+			for (Callable<String> task : producersAndConsumers) {
+				futures.add(scope.fork(task));
+			}
+			scope.join();
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			if (scope.failure() != null) {
+				System.out.println("Failed after " + elapsed + " ms: " + scope.failure());
+			}
+			for (Future<String> future : futures) {
+				System.out.println(future.isCancelled() ? "Cancelled" : getOrFailure(future));
+			}
 
 		} finally {
 			executorService.shutdown();
 			System.out.println("Executor service shut down");
+			if (LockProfiler.ENABLED) {
+				System.out.println(LockProfiler.report());
+			}
 		}
 
 	}
 
+	private static String getOrFailure(Future<String> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return "Exception: " + e.getMessage();
+		}
+	}
+
 	public static boolean isEmpty(List<Integer> buffer) {
 		return buffer.size() == 0;
 	}
@@ -0,0 +1,309 @@
+package locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченная очередь int'ов с двумя блокировками (two-lock queue Майкла и Скотта, так же устроена
+ * LinkedBlockingQueue).
+ *
+ * В ProducerConsumerWithLocks буфер - это ArrayList<Integer> под одним ReentrantLock: производители и потребители
+ * стоят в одной очереди на блокировку, каждая операция будит всех ждущих через signalAll() (а просыпаются они,
+ * чтобы снова встать в очередь на ту же блокировку), а каждый элемент упаковывается в Integer. К тому же буфер
+ * работает как стек, а не как очередь.
+ *
+ * Здесь элементы лежат в кольцевом массиве int[]. Производители берут только putLock и двигают putIndex,
+ * потребители - только takeLock и двигают takeIndex, так что put() и take() идут параллельно. Общий у них только
+ * счётчик элементов AtomicInteger: производитель пишет элемент в массив и потом увеличивает счётчик, потребитель
+ * видит увеличенный счётчик и потом читает элемент - запись в массив видна ему через volatile-счётчик
+ * (happens-before), и наоборот для освобождённых ячеек.
+ *
+ * Будим адресно, одним signal(), и только на переходах состояния: потребителей - когда очередь была пустой,
+ * производителей - когда была полной. Остальных разбудит по цепочке тот, кто проснулся первым: если после его
+ * операции ещё есть место (элементы), он сам сигналит следующему.
+ */
+public class TwoLockBoundedQueue {
+
+	private final int[] items;
+	private final AtomicInteger count = new AtomicInteger();
+
+	private final Lock putLock = new ReentrantLock();
+	private final Condition notFull = putLock.newCondition();
+	private int putIndex;
+
+	private final Lock takeLock = new ReentrantLock();
+	private final Condition notEmpty = takeLock.newCondition();
+	private int takeIndex;
+
+	public TwoLockBoundedQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.items = new int[capacity];
+	}
+
+	public void put(int item) throws InterruptedException {
+		int c;
+		putLock.lockInterruptibly();
+		try {
+			while (count.get() == items.length) {
+				notFull.await();
+			}
+			c = enqueue(item);
+		} finally {
+			putLock.unlock();
+		}
+		if (c == 0) {
+			signalNotEmpty();
+		}
+	}
+
+	/**
+	 * Кладёт элемент, ожидая места не дольше timeout; возвращает false, если место так и не появилось.
+	 */
+	public boolean offer(int item, long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		int c;
+		putLock.lockInterruptibly();
+		try {
+			while (count.get() == items.length) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			c = enqueue(item);
+		} finally {
+			putLock.unlock();
+		}
+		if (c == 0) {
+			signalNotEmpty();
+		}
+		return true;
+	}
+
+	public int take() throws InterruptedException {
+		int item;
+		int c;
+		takeLock.lockInterruptibly();
+		try {
+			while (count.get() == 0) {
+				notEmpty.await();
+			}
+			item = items[takeIndex];
+			c = dequeue();
+		} finally {
+			takeLock.unlock();
+		}
+		if (c == items.length) {
+			signalNotFull();
+		}
+		return item;
+	}
+
+	/**
+	 * Забирает элемент, ожидая не дольше timeout.
+	 *
+	 * @throws TimeoutException если очередь так и осталась пустой
+	 */
+	public int poll(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		long nanos = unit.toNanos(timeout);
+		int item;
+		int c;
+		takeLock.lockInterruptibly();
+		try {
+			while (count.get() == 0) {
+				if (nanos <= 0) {
+					throw new TimeoutException("Queue is still empty");
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			item = items[takeIndex];
+			c = dequeue();
+		} finally {
+			takeLock.unlock();
+		}
+		if (c == items.length) {
+			signalNotFull();
+		}
+		return item;
+	}
+
+	public int size() {
+		return count.get();
+	}
+
+	public int capacity() {
+		return items.length;
+	}
+
+	/**
+	 * Вызывается под putLock; возвращает количество элементов до вставки.
+	 */
+	private int enqueue(int item) {
+		items[putIndex] = item;
+		if (++putIndex == items.length) {
+			putIndex = 0;
+		}
+		int c = count.getAndIncrement();
+		if (c + 1 < items.length) {
+			// место ещё есть - будим следующего производителя, своих мы уже не задерживаем
+			notFull.signal();
+		}
+		return c;
+	}
+
+	/**
+	 * Вызывается под takeLock; возвращает количество элементов до извлечения.
+	 */
+	private int dequeue() {
+		if (++takeIndex == items.length) {
+			takeIndex = 0;
+		}
+		int c = count.getAndDecrement();
+		if (c > 1) {
+			notEmpty.signal();
+		}
+		return c;
+	}
+
+	private void signalNotEmpty() {
+		takeLock.lock();
+		try {
+			notEmpty.signal();
+		} finally {
+			takeLock.unlock();
+		}
+	}
+
+	private void signalNotFull() {
+		putLock.lock();
+		try {
+			notFull.signal();
+		} finally {
+			putLock.unlock();
+		}
+	}
+
+	// ================================================================================================================
+
+	interface IntBuffer {
+
+		void put(int item) throws InterruptedException;
+
+		int take() throws InterruptedException;
+	}
+
+	/**
+	 * Буфер из ProducerConsumerWithLocks: ArrayList<Integer> как стек, одна блокировка и signalAll().
+	 */
+	static class SingleLockStack implements IntBuffer {
+
+		private final List<Integer> buffer = new ArrayList<>();
+		private final int capacity;
+		private final Lock lock = new ReentrantLock();
+		private final Condition isEmpty = lock.newCondition();
+		private final Condition isFull = lock.newCondition();
+
+		SingleLockStack(int capacity) {
+			this.capacity = capacity;
+		}
+
+		@Override
+		public void put(int item) throws InterruptedException {
+			lock.lock();
+			try {
+				while (buffer.size() == capacity) {
+					isFull.await();
+				}
+				buffer.add(item);
+				isEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int take() throws InterruptedException {
+			lock.lock();
+			try {
+				while (buffer.isEmpty()) {
+					isEmpty.await();
+				}
+				int item = buffer.remove(buffer.size() - 1);
+				isFull.signalAll();
+				return item;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 4 производителя и 4 потребителя, как в ProducerConsumerWithLocks, перекладывают items элементов;
+	 * возвращает миллионы элементов в секунду.
+	 */
+	static double throughput(IntBuffer buffer, int items) throws Exception {
+		int pairs = 4;
+		int perThread = items / pairs;
+		ExecutorService executorService = Executors.newFixedThreadPool(2 * pairs);
+		try {
+			List<Callable<Long>> tasks = new ArrayList<>();
+			for (int i = 0; i < pairs; i++) {
+				tasks.add(() -> {
+					for (int n = 0; n < perThread; n++) {
+						buffer.put(n);
+					}
+					return 0L;
+				});
+				tasks.add(() -> {
+					long sum = 0;
+					for (int n = 0; n < perThread; n++) {
+						sum += buffer.take();
+					}
+					return sum;
+				});
+			}
+			long start = System.nanoTime();
+			long sum = 0;
+			for (Future<Long> future : executorService.invokeAll(tasks)) {
+				sum += future.get();
+			}
+			long elapsed = System.nanoTime() - start;
+			if (sum != (long) pairs * perThread * (perThread - 1) / 2) {
+				throw new IllegalStateException("Lost or duplicated items: sum = " + sum);
+			}
+			return (double) pairs * perThread / elapsed * 1_000;
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int items = 2_000_000;
+		for (int capacity : new int[]{10, 1_024}) {
+			for (int round = 0; round < 3; round++) {
+				double single = throughput(new SingleLockStack(capacity), items);
+				TwoLockBoundedQueue queue = new TwoLockBoundedQueue(capacity);
+				double twoLock = throughput(new IntBuffer() {
+					@Override
+					public void put(int item) throws InterruptedException {
+						queue.put(item);
+					}
+
+					@Override
+					public int take() throws InterruptedException {
+						return queue.take();
+					}
+				}, items);
+				System.out.printf("capacity = %5d: single lock + signalAll = %6.2f M items/s, two locks = %6.2f M items/s%n",
+						capacity, single, twoLock);
+			}
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package locks.cache;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Постоянное хранилище за кэшем (база, удалённый сервис, файл), в которое WriteBehindCache сбрасывает изменения.
+ */
+public interface BackingStore {
+
+	/**
+	 * Записывает пачку значений. Пачка либо записана целиком, либо метод бросает исключение - тогда
+	 * WriteBehindCache вернёт эти ключи в очередь и попробует снова.
+	 */
+	void writeAll(Map<Long, String> batch) throws IOException;
+}
@@ -0,0 +1,30 @@
+package locks.cache;
+
+/**
+ * Общий интерфейс кэшей из этого пакета (и CacheWithReadWriteLock), чтобы их можно было сравнивать
+ * в одних и тех же бенчмарках.
+ */
+public interface Cache {
+
+	/**
+	 * Возвращает предыдущее значение или null.
+	 */
+	String put(Long key, String value);
+
+	/**
+	 * Возвращает значение или null, если ключа в кэше нет.
+	 */
+	String get(Long key);
+
+	/**
+	 * Перегрузки с примитивным ключом. По умолчанию просто упаковывают ключ, кэши с картой на long
+	 * (LongObjectHashMap) переопределяют их, чтобы путь поиска не создавал объектов.
+	 */
+	default String put(long key, String value) {
+		return put(Long.valueOf(key), value);
+	}
+
+	default String get(long key) {
+		return get(Long.valueOf(key));
+	}
+}
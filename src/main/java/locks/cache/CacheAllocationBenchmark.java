@@ -0,0 +1,103 @@
+package locks.cache;
+
+import collections.ConcurrentLongObjectHashMap;
+import collections.LongObjectHashMap;
+import locks.CacheWithReadWriteLock;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сколько байт создаёт и сколько наносекунд занимает одна операция put + get на картах с ключом Long и на картах
+ * с ключом long. Ключи, как у Producer в CacheWithReadWriteLock, - случайные из [0, 1_000), значения заранее созданы,
+ * так что всё, что насчитает getThreadAllocatedBytes(), - это накладные расходы самой карты (упаковка ключей, узлы).
+ */
+public class CacheAllocationBenchmark {
+
+	private static final int KEYS = 1_000;
+	private static final int OPERATIONS = 5_000_000;
+
+	private interface Operation {
+		void run(long key, String value);
+	}
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private static long sink;
+
+	private static void measure(String name, long[] keys, String[] values, Operation operation) {
+		// прогрев, чтобы JIT успел скомпилировать (и, где может, убрать упаковку)
+		for (int i = 0; i < OPERATIONS; i++) {
+			operation.run(keys[i & (keys.length - 1)], values[i & (values.length - 1)]);
+		}
+		long thread = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < OPERATIONS; i++) {
+			operation.run(keys[i & (keys.length - 1)], values[i & (values.length - 1)]);
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		System.out.printf("%-32s %6.1f ns/op %8.2f bytes/op%n", name, (double) elapsed / OPERATIONS,
+				(double) allocated / OPERATIONS);
+	}
+
+	public static void main(String[] args) {
+
+		Random random = new Random(42);
+		long[] keys = new long[1 << 16];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt(KEYS);
+		}
+		String[] values = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			values[i] = Integer.toString(i);
+		}
+		String[] valueOfKey = new String[1 << 16];
+		for (int i = 0; i < keys.length; i++) {
+			valueOfKey[i] = values[(int) keys[i]];
+		}
+
+		Map<Long, String> hashMap = new HashMap<>();
+		measure("HashMap<Long, String>", keys, valueOfKey, (key, value) -> {
+			hashMap.put(key, value);
+			sink += hashMap.get(key).length();
+		});
+
+		LongObjectHashMap<String> longMap = new LongObjectHashMap<>();
+		measure("LongObjectHashMap<String>", keys, valueOfKey, (key, value) -> {
+			longMap.put(key, value);
+			sink += longMap.get(key).length();
+		});
+
+		Map<Long, String> concurrentMap = new ConcurrentHashMap<>();
+		measure("ConcurrentHashMap<Long, String>", keys, valueOfKey, (key, value) -> {
+			concurrentMap.put(key, value);
+			sink += concurrentMap.get(key).length();
+		});
+
+		ConcurrentLongObjectHashMap<String> concurrentLongMap = new ConcurrentLongObjectHashMap<>();
+		measure("ConcurrentLongObjectHashMap", keys, valueOfKey, (key, value) -> {
+			concurrentLongMap.put(key, value);
+			sink += concurrentLongMap.get(key).length();
+		});
+
+		CacheWithReadWriteLock boxedCache = new CacheWithReadWriteLock();
+		measure("CacheWithReadWriteLock(Long)", keys, valueOfKey, (key, value) -> {
+			boxedCache.put(Long.valueOf(key), value);
+			sink += boxedCache.get(Long.valueOf(key)).length();
+		});
+
+		CacheWithReadWriteLock cache = new CacheWithReadWriteLock();
+		measure("CacheWithReadWriteLock(long)", keys, valueOfKey, (key, value) -> {
+			cache.put(key, value);
+			sink += cache.get(key).length();
+		});
+
+		System.out.println(sink == 0 ? "" : "done");
+	}
+}
@@ -0,0 +1,85 @@
+package locks.cache;
+
+import locks.CacheWithReadWriteLock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение кэшей под нагрузкой от 1 до 2 * (число ядер) потоков. Каждый поток, как Producer в
+ * CacheWithReadWriteLock, берёт случайный ключ из [0, keys) и с вероятностью readPercent читает его, иначе пишет.
+ * Меряем суммарное количество операций в секунду за фиксированное время.
+ */
+public class CacheBenchmark {
+
+	public static double throughput(Cache cache, int threads, int readPercent, int keys, long millis)
+			throws InterruptedException, ExecutionException {
+
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Long>> futures = new ArrayList<>();
+		try {
+			for (int i = 0; i < threads; i++) {
+				futures.add(executorService.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					start.await();
+					long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+					long operations = 0;
+					while ((operations & 0xFF) != 0 || System.nanoTime() < deadline) {
+						long key = random.nextInt(keys);
+						if (random.nextInt(100) < readPercent) {
+							cache.get(key);
+						} else {
+							cache.put(key, Long.toString(key));
+						}
+						operations++;
+					}
+					return operations;
+				}));
+			}
+			long begin = System.nanoTime();
+			start.countDown();
+			long operations = 0;
+			for (Future<Long> future : futures) {
+				operations += future.get();
+			}
+			return operations * 1e9 / (System.nanoTime() - begin);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	public static void run(Map<String, Supplier<Cache>> caches, int readPercent, int keys, long millis)
+			throws InterruptedException, ExecutionException {
+
+		int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+		System.out.println("Read " + readPercent + "%, " + keys + " keys, ops/sec:");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			StringBuilder line = new StringBuilder(String.format("%3d threads", threads));
+			for (Map.Entry<String, Supplier<Cache>> entry : caches.entrySet()) {
+				double result = throughput(entry.getValue().get(), threads, readPercent, keys, millis);
+				line.append(String.format("  %s = %,.0f", entry.getKey(), result));
+			}
+			System.out.println(line);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Map<String, Supplier<Cache>> caches = new LinkedHashMap<>();
+		caches.put("CacheWithReadWriteLock", CacheWithReadWriteLock::new);
+		caches.put("SegmentedLruCache", () -> new SegmentedLruCache(1_000));
+
+		// put-then-get, как в CacheWithReadWriteLock.main()
+		run(caches, 50, 1_000, 1_000);
+		run(caches, 90, 1_000, 1_000);
+
+		SegmentedLruCache bounded = new SegmentedLruCache(10_000);
+		throughput(bounded, 4, 50, 100_000, 1_000);
+		System.out.println(bounded);
+	}
+}
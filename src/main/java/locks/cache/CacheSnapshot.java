@@ -0,0 +1,170 @@
+package locks.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Формат файла-снимка кэша и его чтение/запись через memory-mapped файл.
+ *
+ * Файл: заголовок (MAGIC, версия формата, количество блоков), затем блоки - по одному на сегмент
+ * SegmentedLruCache, - и в конце CRC32 всего предшествующего содержимого. Блок: количество записей, длина в байтах и
+ * записи (long ключ, int длина, UTF-8 байты значения) от самой горячей к самой холодной.
+ *
+ * Запись защищена от сбоев: снимок целиком пишется во временный файл рядом, сбрасывается на диск (force) и только
+ * потом атомарно переименовывается поверх старого. Упасть посередине можно только до переименования - тогда остаётся
+ * предыдущий целый снимок. Файл с неверной сигнатурой или контрольной суммой при открытии отбрасывается.
+ *
+ * Открытый снимок ничего не читает заранее, кроме позиций записей: ключи и значения читаются из отображённого файла
+ * по требованию.
+ */
+public final class CacheSnapshot {
+
+	private static final int MAGIC = 0x43534E50;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+
+	private final MappedByteBuffer buffer;
+	private final long[] hotnessOrder;
+
+	private CacheSnapshot(MappedByteBuffer buffer, long[] hotnessOrder) {
+		this.buffer = buffer;
+		this.hotnessOrder = hotnessOrder;
+	}
+
+	/**
+	 * Кодирует копию сегмента в блок снимка. Вызывается без блокировок кэша.
+	 */
+	public static byte[] encodeSegment(SegmentedLruCache.SegmentEntries entries) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 32);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			for (int i = 0; i < entries.size(); i++) {
+				byte[] value = entries.value(i).getBytes(StandardCharsets.UTF_8);
+				out.writeLong(entries.key(i));
+				out.writeInt(value.length);
+				out.write(value);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		byte[] body = bytes.toByteArray();
+		return ByteBuffer.allocate(8 + body.length).putInt(entries.size()).putInt(body.length).put(body).array();
+	}
+
+	public static void write(Path target, List<byte[]> blocks) throws IOException {
+		long size = HEADER_SIZE + Long.BYTES;
+		for (byte[] block : blocks) {
+			size += block.length;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot of " + size + " bytes does not fit into one mapping");
+		}
+
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(blocks.size());
+			for (byte[] block : blocks) {
+				out.put(block);
+			}
+			out.putLong(checksum(out, (int) size - Long.BYTES));
+			out.force();
+		}
+		Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Открывает снимок или возвращает null, если файла нет или он повреждён.
+	 */
+	public static CacheSnapshot open(Path file) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE + Long.BYTES || size > Integer.MAX_VALUE) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+					|| buffer.getLong((int) size - Long.BYTES) != checksum(buffer, (int) size - Long.BYTES)) {
+				return null;
+			}
+
+			int blockCount = buffer.getInt(8);
+			int[][] blockPositions = new int[blockCount][];
+			int total = 0;
+			int position = HEADER_SIZE;
+			for (int b = 0; b < blockCount; b++) {
+				int count = buffer.getInt(position);
+				int end = position + 8 + buffer.getInt(position + 4);
+				int[] entries = new int[count];
+				int entry = position + 8;
+				for (int i = 0; i < count; i++) {
+					entries[i] = entry;
+					entry += Long.BYTES + Integer.BYTES + buffer.getInt(entry + Long.BYTES);
+				}
+				blockPositions[b] = entries;
+				total += count;
+				position = end;
+			}
+
+			// порядок прогрева: по кругу по блокам - самая горячая запись каждого сегмента, потом следующие
+			long[] hotnessOrder = new long[total];
+			int next = 0;
+			for (int rank = 0; next < total; rank++) {
+				for (int[] entries : blockPositions) {
+					if (rank < entries.length) {
+						hotnessOrder[next++] = entries[rank];
+					}
+				}
+			}
+			return new CacheSnapshot(buffer, hotnessOrder);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static long checksum(ByteBuffer buffer, int length) {
+		CRC32 crc = new CRC32();
+		ByteBuffer data = buffer.duplicate();
+		data.limit(length).position(0);
+		crc.update(data);
+		return crc.getValue();
+	}
+
+	public int size() {
+		return hotnessOrder.length;
+	}
+
+	/**
+	 * Позиции записей от самых горячих к самым холодным.
+	 */
+	public long[] hotnessOrder() {
+		return hotnessOrder.clone();
+	}
+
+	public long keyAt(long position) {
+		return buffer.getLong((int) position);
+	}
+
+	public String valueAt(long position) {
+		int length = buffer.getInt((int) position + Long.BYTES);
+		ByteBuffer value = buffer.duplicate();
+		int start = (int) position + Long.BYTES + Integer.BYTES;
+		value.limit(start + length).position(start);
+		return StandardCharsets.UTF_8.decode(value).toString();
+	}
+}
@@ -0,0 +1,77 @@
+package locks.cache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Локальная реализация BackingStore для тестов: журнал в файле, по строке "ключ<TAB>значение" на запись.
+ * Пачка дописывается в конец файла одним write() и сбрасывается на диск (force), т.е. writeAll() стоит
+ * один синхронный ввод-вывод - ровно то, что write-behind и должен амортизировать.
+ * Перевод строки и обратный слэш в значениях экранируются.
+ */
+public class FileBackingStore implements BackingStore {
+
+	private final Path file;
+
+	public FileBackingStore(Path file) {
+		this.file = file;
+	}
+
+	@Override
+	public synchronized void writeAll(Map<Long, String> batch) throws IOException {
+		StringBuilder lines = new StringBuilder();
+		batch.forEach((key, value) -> lines.append(key).append('\t').append(escape(value)).append('\n'));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Читает журнал целиком; для повторяющихся ключей побеждает последняя запись.
+	 */
+	public synchronized Map<Long, String> readAll() throws IOException {
+		Map<Long, String> values = new HashMap<>();
+		if (!Files.exists(file)) {
+			return values;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				values.put(Long.parseLong(line.substring(0, tab)), unescape(line.substring(tab + 1)));
+			}
+		}
+		return values;
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\n", "\\n");
+	}
+
+	private static String unescape(String value) {
+		StringBuilder result = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char next = value.charAt(++i);
+				result.append(next == 'n' ? '\n' : next);
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,83 @@
+package locks.cache;
+
+/**
+ * Count-min sketch: приблизительная частота обращений к ключам в фиксированном объёме памяти.
+ *
+ * Счётчики 4-битные (максимум 15), по 16 штук в одном long. На каждый ключ приходится DEPTH счётчиков в разных строках
+ * (разные хэш-функции); оценка частоты - минимум из них: коллизии могут только завысить счётчик, поэтому минимум
+ * ближе всего к правде.
+ *
+ * Старение: после sampleSize увеличений все счётчики делятся пополам. Так старая популярность постепенно забывается,
+ * и ключ, который был горячим вчера, не держится в кэше вечно.
+ *
+ * Класс не потокобезопасный, вызывается под блокировкой кэша.
+ */
+public class FrequencySketch {
+
+	private static final int DEPTH = 4;
+	private static final long[] SEEDS = {
+			0x97CB3127C2B2AE35L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x9E3779B97F4A7C15L
+	};
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private final long[][] table;
+	private final int mask;
+	private final int sampleSize;
+	private int additions;
+
+	public FrequencySketch(int maximumSize) {
+		int counters = Integer.highestOneBit(Math.max(64, maximumSize) - 1) << 1;
+		int words = Math.max(1, counters / 16);
+		table = new long[DEPTH][words];
+		mask = words - 1;
+		sampleSize = 10 * Math.max(1, maximumSize);
+	}
+
+	public int frequency(long key) {
+		int frequency = Integer.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			long h = hash(key, row);
+			int shift = counterShift(h);
+			frequency = Math.min(frequency, (int) ((table[row][index(h)] >>> shift) & 0xF));
+		}
+		return frequency;
+	}
+
+	public void increment(long key) {
+		boolean added = false;
+		for (int row = 0; row < DEPTH; row++) {
+			long h = hash(key, row);
+			int index = index(h);
+			int shift = counterShift(h);
+			if (((table[row][index] >>> shift) & 0xF) < 15) {
+				table[row][index] += 1L << shift;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	private void reset() {
+		for (long[] row : table) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] = (row[i] >>> 1) & RESET_MASK;
+			}
+		}
+		additions /= 2;
+	}
+
+	private int index(long h) {
+		return (int) (h >>> 32) & mask;
+	}
+
+	private static int counterShift(long h) {
+		return ((int) h & 0xF) << 2;
+	}
+
+	private static long hash(long key, int row) {
+		long h = (key + SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+		return h ^ (h >>> 29);
+	}
+}
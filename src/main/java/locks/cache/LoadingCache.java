@@ -0,0 +1,300 @@
+package locks.cache;
+
+import locks.CacheWithReadWriteLock;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Загружающий кэш: getOrLoad(key, loader) сам вызывает loader при промахе и возвращает CompletableFuture.
+ *
+ * У CacheWithReadWriteLock есть только get() и put(), поэтому при промахе по популярному ключу каждый поток сам идёт
+ * за значением в источник данных - и источник получает толпу одинаковых запросов (cache stampede, thundering herd).
+ * Здесь все одновременные промахи по одному ключу получают один и тот же CompletableFuture: загрузку запускает
+ * только тот, кто первым положил свой future в карту loading, остальные ждут его результат (single-flight).
+ *
+ * Refresh-ahead: если запись старше refreshAfter, но ещё не истекла (expireAfter), вызывающий сразу получает старое
+ * значение, а в фоне запускается одна перезагрузка. Популярные ключи так обновляются до истечения, и никто не ждёт.
+ *
+ * getAll() собирает все промахи, которые ещё никто не грузит, и загружает их одним вызовом bulkLoader.
+ *
+ * Загрузчики выполняются на переданном executor'е. Исключение из загрузчика завершает future исключением и не
+ * кэшируется - следующий запрос попробует снова.
+ */
+public class LoadingCache {
+
+	private static final class Entry {
+
+		private final String value;
+		private final long loadedAt;
+
+		Entry(String value, long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final ConcurrentHashMap<Long, Entry> values = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Long, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+	private final Executor executor;
+	private final long refreshAfterNanos;
+	private final long expireAfterNanos;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+
+	public LoadingCache(Executor executor) {
+		this(executor, Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	public LoadingCache(Executor executor, long refreshAfter, long expireAfter, TimeUnit unit) {
+		if (refreshAfter > expireAfter) {
+			throw new IllegalArgumentException("refreshAfter must not exceed expireAfter");
+		}
+		this.executor = executor;
+		this.refreshAfterNanos = unit.toNanos(refreshAfter);
+		this.expireAfterNanos = unit.toNanos(expireAfter);
+	}
+
+	public CompletableFuture<String> getOrLoad(long key, Function<Long, String> loader) {
+		long now = System.nanoTime();
+		Entry entry = values.get(key);
+		if (entry != null && now - entry.loadedAt < expireAfterNanos) {
+			hits.increment();
+			if (now - entry.loadedAt >= refreshAfterNanos && !loading.containsKey(key)) {
+				refreshes.increment();
+				load(key, keys -> Collections.singletonMap(key, loader.apply(key)), refreshAfterNanos);
+			}
+			return CompletableFuture.completedFuture(entry.value);
+		}
+		misses.increment();
+		return load(key, keys -> Collections.singletonMap(key, loader.apply(key)), expireAfterNanos);
+	}
+
+	public CompletableFuture<Map<Long, String>> getAll(Collection<Long> keys,
+			Function<Set<Long>, Map<Long, String>> bulkLoader) {
+
+		long now = System.nanoTime();
+		Map<Long, CompletableFuture<String>> futures = new LinkedHashMap<>();
+		Map<Long, CompletableFuture<String>> owned = new LinkedHashMap<>();
+
+		for (Long key : keys) {
+			Entry entry = values.get(key);
+			if (entry != null && now - entry.loadedAt < expireAfterNanos) {
+				hits.increment();
+				futures.put(key, CompletableFuture.completedFuture(entry.value));
+				continue;
+			}
+			misses.increment();
+			CompletableFuture<String> mine = new CompletableFuture<>();
+			CompletableFuture<String> existing = loading.putIfAbsent(key, mine);
+			if (existing != null) {
+				futures.put(key, existing);
+			} else {
+				futures.put(key, mine);
+				if (!completeIfLoaded(key, mine, expireAfterNanos)) {
+					owned.put(key, mine);
+				}
+			}
+		}
+
+		if (!owned.isEmpty()) {
+			submit(owned, bulkLoader);
+		}
+
+		return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			Map<Long, String> result = new LinkedHashMap<>();
+			futures.forEach((key, future) -> {
+				String value = future.join();
+				if (value != null) {
+					result.put(key, value);
+				}
+			});
+			return result;
+		});
+	}
+
+	/**
+	 * Запускает загрузку ключа, если её ещё никто не запустил, иначе возвращает уже идущую. Значение, загруженное
+	 * не раньше freshNanos назад, повторно не грузится.
+	 */
+	private CompletableFuture<String> load(long key, Function<Set<Long>, Map<Long, String>> loader, long freshNanos) {
+		CompletableFuture<String> mine = new CompletableFuture<>();
+		CompletableFuture<String> existing = loading.putIfAbsent(key, mine);
+		if (existing != null) {
+			return existing;
+		}
+		if (!completeIfLoaded(key, mine, freshNanos)) {
+			submit(Collections.singletonMap(key, mine), loader);
+		}
+		return mine;
+	}
+
+	/**
+	 * runLoad() кладёт значение в values раньше, чем убирает future из loading, поэтому между нашим промахом
+	 * и putIfAbsent() чужая загрузка могла успеть завершиться целиком. Тогда грузить заново незачем: отдаём её
+	 * значение и снимаем свою регистрацию.
+	 */
+	private boolean completeIfLoaded(long key, CompletableFuture<String> mine, long freshNanos) {
+		Entry entry = values.get(key);
+		if (entry == null || System.nanoTime() - entry.loadedAt >= freshNanos) {
+			return false;
+		}
+		loading.remove(key, mine);
+		mine.complete(entry.value);
+		return true;
+	}
+
+	/**
+	 * Отправляет загрузку в executor. Если executor её отклонил, зарегистрированные future никто бы не завершил:
+	 * убираем их из loading, завершаем с ошибкой и пробрасываем исключение.
+	 */
+	private void submit(Map<Long, CompletableFuture<String>> owned, Function<Set<Long>, Map<Long, String>> loader) {
+		try {
+			executor.execute(() -> runLoad(owned, loader));
+		} catch (RejectedExecutionException e) {
+			owned.forEach((key, future) -> {
+				loading.remove(key, future);
+				future.completeExceptionally(e);
+			});
+			throw e;
+		}
+	}
+
+	private void runLoad(Map<Long, CompletableFuture<String>> owned, Function<Set<Long>, Map<Long, String>> loader) {
+		loads.increment();
+		Map<Long, String> loaded;
+		try {
+			loaded = loader.apply(Collections.unmodifiableSet(owned.keySet()));
+		} catch (Throwable e) {
+			owned.forEach((key, future) -> {
+				loading.remove(key, future);
+				future.completeExceptionally(e);
+			});
+			return;
+		}
+		long now = System.nanoTime();
+		owned.forEach((key, future) -> {
+			String value = loaded == null ? null : loaded.get(key);
+			if (value != null) {
+				values.put(key, new Entry(value, now));
+			}
+			loading.remove(key, future);
+			future.complete(value);
+		});
+	}
+
+	public void invalidate(long key) {
+		values.remove(key);
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Сколько раз вызывался загрузчик (bulk-загрузка считается одним вызовом).
+	 */
+	public long loads() {
+		return loads.sum();
+	}
+
+	public long refreshes() {
+		return refreshes.sum();
+	}
+
+	// ================================================================================================================
+
+	private static String slowLoad(long key, LongAdder invocations) {
+		invocations.increment();
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return Long.toString(key);
+	}
+
+	/**
+	 * rounds раз threads потоков одновременно (по CountDownLatch) запрашивают один и тот же новый ключ.
+	 */
+	private static long[] herd(int threads, int rounds, ExecutorService callers, Function<Long, String> request)
+			throws InterruptedException, ExecutionException {
+
+		long[] latencies = new long[threads * rounds];
+		for (int round = 0; round < rounds; round++) {
+			long key = round;
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Long>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(callers.submit(() -> {
+					start.await();
+					long begin = System.nanoTime();
+					request.apply(key);
+					return System.nanoTime() - begin;
+				}));
+			}
+			start.countDown();
+			for (int i = 0; i < threads; i++) {
+				latencies[round * threads + i] = futures.get(i).get();
+			}
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	private static void report(String name, long invocations, long[] latencies) {
+		int n = latencies.length;
+		System.out.printf("%-24s loader calls = %4d, p50 = %6.1f ms, p99 = %6.1f ms, max = %6.1f ms%n", name,
+				invocations, latencies[n / 2] / 1e6, latencies[n * 99 / 100] / 1e6, latencies[n - 1] / 1e6);
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		int threads = 64;
+		int rounds = 20;
+		ExecutorService callers = Executors.newFixedThreadPool(threads);
+		ExecutorService loaders = Executors.newFixedThreadPool(4);
+
+		try {
+			// get(), при промахе - загрузка и put(): каждый поток грузит сам
+			CacheWithReadWriteLock plain = new CacheWithReadWriteLock();
+			LongAdder plainLoads = new LongAdder();
+			long[] plainLatencies = herd(threads, rounds, callers, key -> {
+				String value = plain.get(key.longValue());
+				if (value == null) {
+					value = slowLoad(key, plainLoads);
+					plain.put(key.longValue(), value);
+				}
+				return value;
+			});
+			report("CacheWithReadWriteLock", plainLoads.sum(), plainLatencies);
+
+			LoadingCache loading = new LoadingCache(loaders);
+			LongAdder coalescedLoads = new LongAdder();
+			long[] coalescedLatencies = herd(threads, rounds, callers,
+					key -> loading.getOrLoad(key, k -> slowLoad(k, coalescedLoads)).join());
+			report("LoadingCache", coalescedLoads.sum(), coalescedLatencies);
+
+			LongAdder bulkCalls = new LongAdder();
+			Map<Long, String> all = loading.getAll(Arrays.asList(1L, 100L, 101L, 102L, 103L), keys -> {
+				bulkCalls.increment();
+				Map<Long, String> result = new HashMap<>();
+				keys.forEach(key -> result.put(key, Long.toString(key)));
+				return result;
+			}).get();
+			System.out.println("getAll: " + all.size() + " values with " + bulkCalls.sum() + " bulk loader call(s)");
+		} finally {
+			callers.shutdown();
+			loaders.shutdown();
+		}
+	}
+}
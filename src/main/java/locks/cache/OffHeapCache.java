@@ -0,0 +1,303 @@
+package locks.cache;
+
+import collections.LongLongHashMap;
+import locks.CacheWithReadWriteLock;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Кэш, значения которого хранятся вне кучи.
+ *
+ * Миллионы String-значений в CacheWithReadWriteLock - это миллионы долгоживущих объектов в old generation: сборщику
+ * мусора приходится их обходить и копировать, и паузы растут вместе с размером кэша. Здесь в куче остаётся только
+ * индекс LongLongHashMap: ключ -> handle (номер слаба, смещение и длина в одном long, см. SlabAllocator), т.е. два
+ * массива примитивов, которые сборщик не обходит поэлементно. Сами значения лежат в direct ByteBuffer'ах.
+ *
+ * Значение кодируется в UTF-8 сразу в слот слаба (CharsetEncoder пишет прямо в срез буфера) и декодируется прямо из
+ * слота - промежуточных byte[] нет, единственная копия на чтении - это сама возвращаемая строка.
+ *
+ * Когда память (maxBytes) кончается, вытесняются записи того же класса размеров, что и новое значение, - так их слот
+ * сразу подходит для него. Кандидатов перебирает "часовая стрелка" по ячейкам индекса, т.е. вытесняется примерно
+ * случайная запись. Освобождённые слоты переиспользуются, а опустевший слаб переходит к другому классу размеров.
+ *
+ * Блокировки - как в CacheWithReadWriteLock: get() под блокировкой на чтение (слот не может освободиться, пока его
+ * читают), put() - под блокировкой на запись.
+ */
+public class OffHeapCache implements Cache {
+
+	private final LongLongHashMap index = new LongLongHashMap();
+	private final SlabAllocator allocator;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Lock readLock = lock.readLock();
+	private final Lock writeLock = lock.writeLock();
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final ThreadLocal<CharsetDecoder> decoders = ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+	private final ThreadLocal<CharBuffer> chars = ThreadLocal.withInitial(() -> CharBuffer.allocate(256));
+
+	private int clockHand;
+	private long evictions;
+
+	public OffHeapCache(long maxBytes) {
+		this.allocator = new SlabAllocator(maxBytes);
+	}
+
+	@Override
+	public String put(Long key, String value) {
+		return put(key.longValue(), value);
+	}
+
+	@Override
+	public String get(Long key) {
+		return get(key.longValue());
+	}
+
+	@Override
+	public String put(long key, String value) {
+		int length = utf8Length(value);
+		writeLock.lock();
+		try {
+			long previousHandle = index.get(key);
+			String previous = previousHandle == 0 ? null : decode(previousHandle);
+
+			long handle = allocate(length, key);
+			try {
+				encode(value, handle);
+			} catch (RuntimeException e) {
+				// значение не записано - слот возвращаем, иначе он потерян до конца жизни кэша
+				allocator.free(handle);
+				throw e;
+			}
+			index.put(key, handle);
+			if (previousHandle != 0) {
+				allocator.free(previousHandle);
+			}
+			return previous;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public String get(long key) {
+		readLock.lock();
+		try {
+			long handle = index.get(key);
+			return handle == 0 ? null : decode(handle);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	public String remove(long key) {
+		writeLock.lock();
+		try {
+			long handle = index.remove(key);
+			if (handle == 0) {
+				return null;
+			}
+			String previous = decode(handle);
+			allocator.free(handle);
+			return previous;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	public int size() {
+		readLock.lock();
+		try {
+			return index.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	public long evictions() {
+		readLock.lock();
+		try {
+			return evictions;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	public long offHeapBytes() {
+		readLock.lock();
+		try {
+			return allocator.reservedBytes();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private long allocate(int length, long keep) {
+		while (!allocator.canAllocate(length)) {
+			if (!evictOne(SlabAllocator.sizeClassOf(length), keep)) {
+				throw new IllegalStateException("Cannot free memory for a value of " + length + " bytes");
+			}
+		}
+		return allocator.allocate(length);
+	}
+
+	/**
+	 * Вытесняет одну запись, предпочитая класс размеров sizeClass. Если за полный оборот стрелки такой записи нет,
+	 * вытесняется любая (освобождая слабы целиком, память рано или поздно перейдёт к нужному классу).
+	 */
+	private boolean evictOne(int sizeClass, long keep) {
+		int capacity = index.capacity();
+		int fallback = -1;
+		for (int step = 0; step < capacity; step++) {
+			int slot = clockHand;
+			clockHand = (clockHand + 1) & (capacity - 1);
+			long handle = index.valueAt(slot);
+			if (handle == 0 || index.keyAt(slot) == keep) {
+				continue;
+			}
+			if (SlabAllocator.sizeClassOfHandle(handle) == sizeClass) {
+				evict(slot, handle);
+				return true;
+			}
+			if (fallback < 0) {
+				fallback = slot;
+			}
+		}
+		if (fallback < 0) {
+			return false;
+		}
+		evict(fallback, index.valueAt(fallback));
+		return true;
+	}
+
+	private void evict(int slot, long handle) {
+		index.remove(index.keyAt(slot));
+		allocator.free(handle);
+		evictions++;
+	}
+
+	private void encode(String value, long handle) {
+		ByteBuffer slot = allocator.buffer(handle).duplicate();
+		int offset = SlabAllocator.offset(handle);
+		slot.limit(offset + SlabAllocator.length(handle)).position(offset);
+		encoder.reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(value), slot, true);
+		if (!result.isError() && !result.isOverflow()) {
+			result = encoder.flush(slot);
+		}
+		// переполнение значит, что utf8Length() и кодировщик разошлись в длине; молча обрезать значение нельзя
+		if (result.isError() || result.isOverflow()) {
+			throw new IllegalArgumentException("Cannot encode value: " + result);
+		}
+	}
+
+	private String decode(long handle) {
+		ByteBuffer slot = allocator.buffer(handle).duplicate();
+		int offset = SlabAllocator.offset(handle);
+		int length = SlabAllocator.length(handle);
+		slot.limit(offset + length).position(offset);
+
+		CharBuffer target = chars.get();
+		if (target.capacity() < length) {
+			target = CharBuffer.allocate(Integer.highestOneBit(length) << 1);
+			chars.set(target);
+		}
+		target.clear();
+		CharsetDecoder decoder = decoders.get().reset();
+		decoder.decode(slot, target, true);
+		decoder.flush(target);
+		return target.flip().toString();
+	}
+
+	private static int utf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	// ================================================================================================================
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, bean.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, bean.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void measure(String name, Cache cache, int entries) {
+		long heapBefore = usedHeap();
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+
+		String padding = "x".repeat(100);
+		for (long key = 0; key < entries; key++) {
+			cache.put(key, padding + key);
+		}
+		int samples = 1_000_000;
+		long[] latencies = new long[samples];
+		for (int i = 0; i < samples; i++) {
+			long key = ThreadLocalRandom.current().nextInt(entries);
+			long start = System.nanoTime();
+			cache.get(key);
+			latencies[i] = System.nanoTime() - start;
+			if ((i & 7) == 0) {
+				// немного записей, чтобы было что собирать сборщику
+				cache.put(key, padding + i);
+			}
+		}
+		long heap = usedHeap() - heapBefore;
+		Arrays.sort(latencies);
+		System.out.printf("%-24s heap = %5d MB, GC: %4d collections, %5d ms, get p50 = %4d ns, p99 = %5d ns, p99.9 = %6d ns%n",
+				name, heap >> 20, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore,
+				latencies[samples / 2], latencies[samples * 99 / 100], latencies[samples * 999 / 1000]);
+	}
+
+	public static void main(String[] args) {
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+		measure("CacheWithReadWriteLock", new CacheWithReadWriteLock(), entries);
+
+		OffHeapCache offHeap = new OffHeapCache(512L << 20);
+		measure("OffHeapCache", offHeap, entries);
+		System.out.println("Off-heap reserved = " + (offHeap.offHeapBytes() >> 20) + " MB, evictions = " + offHeap.evictions());
+	}
+}
@@ -0,0 +1,240 @@
+package locks.cache;
+
+import collections.LongLongHashMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SegmentedLruCache, который переживает перезапуск: содержимое периодически сохраняется в снимок (CacheSnapshot),
+ * а при старте кэш прогревается из последнего снимка, и бэкенд не получает волну промахов холодного кэша.
+ *
+ * Снимок делается в фоне по одному сегменту: блокируется только копируемый сегмент и только на время копирования
+ * ссылок, кодирование и запись в файл идут без блокировок. Снимок инкрементальный: сегмент, в который с прошлого
+ * снимка ничего не записали (не изменилась segmentVersion()), повторно не копируется и не кодируется - берётся
+ * готовый блок с прошлого раза.
+ *
+ * Прогрев ленивый: конструктор только открывает снимок и сразу возвращает управление. Фоновый поток кладёт записи
+ * в кэш от самых горячих к самым холодным, а промах get() по ключу, до которого прогрев ещё не дошёл, берёт значение
+ * из снимка сразу. Ключ, который успели записать через put(), из снимка больше не берётся - там старое значение.
+ */
+public class PersistentCache implements Cache, Closeable {
+
+	private static final int WARM_BATCH = 1_024;
+
+	private final SegmentedLruCache cache;
+	private final Path file;
+	private final ScheduledExecutorService scheduler;
+
+	private final Object warmLock = new Object();
+	private CacheSnapshot warmSource;
+	private LongLongHashMap pending;
+	private volatile boolean warming;
+
+	private final byte[][] blocks;
+	private final long[] blockVersions;
+
+	public PersistentCache(SegmentedLruCache cache, Path file, long snapshotInterval, TimeUnit unit) {
+		this.cache = cache;
+		this.file = file;
+		this.blocks = new byte[cache.segments()][];
+		this.blockVersions = new long[cache.segments()];
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cache-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		CacheSnapshot snapshot = CacheSnapshot.open(file);
+		if (snapshot != null && snapshot.size() > 0) {
+			warmSource = snapshot;
+			pending = new LongLongHashMap(snapshot.size());
+			for (long position : snapshot.hotnessOrder()) {
+				pending.put(snapshot.keyAt(position), position);
+			}
+			warming = true;
+			scheduler.execute(() -> warm(snapshot.hotnessOrder()));
+		}
+		// поток один, так что первый снимок не начнётся, пока не закончится прогрев
+		scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval, snapshotInterval, unit);
+	}
+
+	@Override
+	public String put(Long key, String value) {
+		if (warming) {
+			synchronized (warmLock) {
+				if (pending != null) {
+					pending.remove(key);
+				}
+			}
+		}
+		return cache.put(key, value);
+	}
+
+	@Override
+	public String get(Long key) {
+		String value = cache.get(key);
+		if (value == null && warming) {
+			value = fromSnapshot(key);
+			if (value != null) {
+				// из pending ключ убираем только после вставки: иначе параллельный get() того же ключа не нашёл бы
+				// его ни в кэше, ни в снимке
+				String current = cache.putIfAbsent(key, value);
+				warmed(key);
+				return current != null ? current : value;
+			}
+		}
+		return value;
+	}
+
+	public boolean isWarming() {
+		return warming;
+	}
+
+	public SegmentedLruCache cache() {
+		return cache;
+	}
+
+	private String fromSnapshot(long key) {
+		synchronized (warmLock) {
+			if (pending == null) {
+				return null;
+			}
+			long position = pending.get(key);
+			return position == 0 ? null : warmSource.valueAt(position);
+		}
+	}
+
+	private void warmed(long key) {
+		synchronized (warmLock) {
+			if (pending != null) {
+				pending.remove(key);
+			}
+		}
+	}
+
+	private void warm(long[] order) {
+		for (int from = 0; from < order.length; from += WARM_BATCH) {
+			long[] keys = new long[WARM_BATCH];
+			String[] values = new String[WARM_BATCH];
+			int count = 0;
+			synchronized (warmLock) {
+				for (int i = from; i < Math.min(order.length, from + WARM_BATCH); i++) {
+					long key = warmSource.keyAt(order[i]);
+					if (pending.get(key) != 0) {
+						keys[count] = key;
+						values[count++] = warmSource.valueAt(order[i]);
+					}
+				}
+			}
+			// как и в get(): сначала в кэш, потом из pending. Если put() нового значения вклинится между ними,
+			// putIfAbsent() его не затрёт, а если putIfAbsent() успеет раньше - put() перезапишет старое значение
+			for (int i = 0; i < count; i++) {
+				cache.putIfAbsent(keys[i], values[i]);
+			}
+			synchronized (warmLock) {
+				for (int i = 0; i < count; i++) {
+					pending.remove(keys[i]);
+				}
+			}
+		}
+		synchronized (warmLock) {
+			warmSource = null;
+			pending = null;
+			warming = false;
+		}
+	}
+
+	/**
+	 * Сохраняет снимок кэша. Вызывается по расписанию и при close(), можно вызвать и вручную.
+	 * Пока идёт прогрев, ничего не делает и возвращает false: снимок недогретого кэша потерял бы записи, до которых
+	 * прогрев не дошёл, и затёр бы полный снимок, с которого кэш сейчас греется.
+	 */
+	public synchronized boolean snapshot() throws IOException {
+		if (warming) {
+			return false;
+		}
+		List<byte[]> current = new ArrayList<>(blocks.length);
+		for (int segment = 0; segment < blocks.length; segment++) {
+			if (blocks[segment] == null || cache.segmentVersion(segment) != blockVersions[segment]) {
+				SegmentedLruCache.SegmentEntries entries = cache.copySegment(segment);
+				blocks[segment] = CacheSnapshot.encodeSegment(entries);
+				blockVersions[segment] = entries.version();
+			}
+			current.add(blocks[segment]);
+		}
+		CacheSnapshot.write(file, current);
+		return true;
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		scheduler.shutdownNow();
+		try {
+			scheduler.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// недогретый кэш snapshot() не сохранит
+		snapshot();
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Path file = Paths.get(System.getProperty("java.io.tmpdir"), "cache-snapshot.bin");
+		Files.deleteIfExists(file);
+
+		try (PersistentCache first = new PersistentCache(new SegmentedLruCache(200_000), file, 1, TimeUnit.SECONDS)) {
+			for (long key = 0; key < 200_000; key++) {
+				first.put(key, "value-" + key);
+			}
+			// горячие ключи
+			for (long key = 0; key < 1_000; key++) {
+				first.get(key);
+			}
+			long start = System.nanoTime();
+			first.snapshot();
+			System.out.println("Full snapshot: " + (System.nanoTime() - start) / 1_000_000 + " ms, "
+					+ Files.size(file) / 1024 + " KB");
+
+			first.put(5L, "changed");
+			start = System.nanoTime();
+			first.snapshot();
+			System.out.println("Incremental snapshot after one put: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+		}
+
+		long start = System.nanoTime();
+		try (PersistentCache second = new PersistentCache(new SegmentedLruCache(200_000), file, 1, TimeUnit.SECONDS)) {
+			System.out.println("Restarted in " + (System.nanoTime() - start) / 1_000_000 + " ms, warming = "
+					+ second.isWarming() + ", get(5) = " + second.get(5L) + ", get(199_999) = " + second.get(199_999L));
+			while (second.isWarming()) {
+				Thread.sleep(10);
+			}
+			System.out.println("Warmed in " + (System.nanoTime() - start) / 1_000_000 + " ms, size = "
+					+ second.cache().size());
+		}
+
+		// повреждённый снимок не загружается
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length / 2] ^= 1;
+		Files.write(file, bytes);
+		System.out.println("Corrupted snapshot opened: " + (CacheSnapshot.open(file) != null));
+		Files.deleteIfExists(file);
+	}
+}
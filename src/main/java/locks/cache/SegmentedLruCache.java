@@ -0,0 +1,224 @@
+package locks.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш с разделением блокировок (lock striping) и вытеснением давно не использованных записей (LRU).
+ *
+ * В CacheWithReadWriteLock вся карта закрыта одним ReentrantReadWriteLock: любая запись останавливает всех
+ * читателей, а сама карта растёт бесконечно. Здесь ключи хэшем раскладываются по N независимым сегментам,
+ * у каждого сегмента своя блокировка и свой LinkedHashMap в режиме access order. Потоки, работающие с разными
+ * сегментами, друг другу не мешают (ровно так же был устроен ConcurrentHashMap до Java 8).
+ *
+ * Общий лимит размера делится между сегментами поровну: если после вставки сегмент превысил свою долю, из него
+ * вытесняется самая давно использованная запись. Сумма долей не больше maxSize, т.е. кэш никогда не превышает
+ * общий лимит, но при неравномерном хэшировании может вытеснять чуть раньше, чем заполнится целиком.
+ *
+ * Обычная блокировка, а не ReadWriteLock, - потому что в LRU чтение тоже меняет структуру (переставляет запись
+ * в конец списка), так что get() всё равно пишущая операция.
+ */
+public class SegmentedLruCache implements Cache {
+
+	private final Segment[] segments;
+	private final int mask;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public SegmentedLruCache(int maxSize) {
+		this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	public SegmentedLruCache(int maxSize, int concurrencyLevel) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		int count = Integer.highestOneBit(Math.max(1, Math.min(concurrencyLevel, maxSize)));
+		segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(maxSize / count);
+		}
+		mask = count - 1;
+	}
+
+	@Override
+	public String put(Long key, String value) {
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			segment.version++;
+			return segment.map.put(key, value);
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Кладёт значение, только если ключа ещё нет; возвращает текущее значение или null, если положили.
+	 */
+	public String putIfAbsent(Long key, String value) {
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			String current = segment.map.get(key);
+			if (current != null) {
+				return current;
+			}
+			segment.version++;
+			segment.map.put(key, value);
+			return null;
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	@Override
+	public String get(Long key) {
+		Segment segment = segmentFor(key);
+		String value;
+		segment.lock();
+		try {
+			value = segment.map.get(key);
+		} finally {
+			segment.unlock();
+		}
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return value;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			segment.lock();
+			try {
+				size += segment.map.size();
+			} finally {
+				segment.unlock();
+			}
+		}
+		return size;
+	}
+
+	public int segments() {
+		return segments.length;
+	}
+
+	/**
+	 * Счётчик записей в сегмент: если он не изменился, содержимое сегмента тоже не менялось (порядок доступа мог).
+	 */
+	public long segmentVersion(int segment) {
+		Segment s = segments[segment];
+		s.lock();
+		try {
+			return s.version;
+		} finally {
+			s.unlock();
+		}
+	}
+
+	/**
+	 * Копия одного сегмента от самой недавно использованной записи к самой давней. Блокируется только этот сегмент
+	 * и только на время копирования ссылок.
+	 */
+	public SegmentEntries copySegment(int segment) {
+		Segment s = segments[segment];
+		s.lock();
+		try {
+			int size = s.map.size();
+			long[] keys = new long[size];
+			String[] values = new String[size];
+			int i = size;
+			// LinkedHashMap в access order перебирается от давних к недавним, поэтому заполняем с конца
+			for (Map.Entry<Long, String> entry : s.map.entrySet()) {
+				i--;
+				keys[i] = entry.getKey();
+				values[i] = entry.getValue();
+			}
+			return new SegmentEntries(s.version, keys, values);
+		} finally {
+			s.unlock();
+		}
+	}
+
+	public static final class SegmentEntries {
+
+		private final long version;
+		private final long[] keys;
+		private final String[] values;
+
+		SegmentEntries(long version, long[] keys, String[] values) {
+			this.version = version;
+			this.keys = keys;
+			this.values = values;
+		}
+
+		public long version() {
+			return version;
+		}
+
+		public int size() {
+			return keys.length;
+		}
+
+		public long key(int i) {
+			return keys[i];
+		}
+
+		public String value(int i) {
+			return values[i];
+		}
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	private Segment segmentFor(Long key) {
+		// перемешиваем биты, иначе последовательные ключи попадут в соседние сегменты по кругу
+		long h = key * 0x9E3779B97F4A7C15L;
+		return segments[(int) (h >>> 32) & mask];
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentedLruCache{segments=" + segments.length + ", size=" + size() + ", hits=" + hits()
+				+ ", misses=" + misses() + ", evictions=" + evictions() + '}';
+	}
+
+	private final class Segment extends ReentrantLock {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Map<Long, String> map;
+		private long version;
+
+		Segment(int capacity) {
+			map = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+					if (size() > capacity) {
+						evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	}
+}
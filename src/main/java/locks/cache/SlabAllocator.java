@@ -0,0 +1,199 @@
+package locks.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Распределитель памяти вне кучи для OffHeapCache (схема как в memcached).
+ *
+ * Память берётся кусками-слабами по 1 МБ (direct ByteBuffer). Каждый слаб в данный момент отдан одному классу
+ * размеров: 32, 64, 128, ... 64К байт, и делится на слоты этого размера. Значение кладётся в слот наименьшего
+ * подходящего класса, т.е. внутренняя фрагментация - не больше чем вдвое, а внешней нет вовсе: любые два слота
+ * одного класса взаимозаменяемы.
+ *
+ * Освобождённый слот возвращается в список свободных слотов своего слаба. Если слаб освободился целиком, он уходит
+ * в общий пул пустых слабов и может достаться любому другому классу - так память перетекает туда, где она нужна,
+ * без копирования живых данных.
+ *
+ * Адрес значения кодируется в одном long (handle): номер слаба (24 бита, с 1, т.е. handle никогда не 0),
+ * смещение в слабе (24 бита) и длина в байтах (16 бит).
+ *
+ * Класс не потокобезопасный: allocate() и free() вызываются под блокировкой на запись, а чтение (buffer(), offset())
+ * безопасно одновременно из многих потоков, пока слот не освобождён.
+ */
+public class SlabAllocator {
+
+	public static final int SLAB_SIZE = 1 << 20;
+	public static final int MIN_CLASS_BITS = 5;
+	public static final int MAX_CLASS_BITS = 16;
+	public static final int MAX_VALUE_SIZE = (1 << MAX_CLASS_BITS) - 1;
+
+	private static final int CLASSES = MAX_CLASS_BITS - MIN_CLASS_BITS + 1;
+
+	private static final class Slab {
+
+		final int id;
+		final ByteBuffer buffer;
+		int sizeClass = -1;
+		int bump;
+		int used;
+		int[] free = new int[16];
+		int freeCount;
+
+		Slab(int id, ByteBuffer buffer) {
+			this.id = id;
+			this.buffer = buffer;
+		}
+
+		boolean hasSpace() {
+			return freeCount > 0 || bump + slotSize(sizeClass) <= SLAB_SIZE;
+		}
+
+		int take() {
+			used++;
+			if (freeCount > 0) {
+				return free[--freeCount];
+			}
+			int offset = bump;
+			bump += slotSize(sizeClass);
+			return offset;
+		}
+
+		void release(int offset) {
+			used--;
+			if (freeCount == free.length) {
+				free = Arrays.copyOf(free, freeCount * 2);
+			}
+			free[freeCount++] = offset;
+		}
+
+		void reset() {
+			sizeClass = -1;
+			bump = 0;
+			used = 0;
+			freeCount = 0;
+		}
+	}
+
+	private final int maxSlabs;
+	private final List<Slab> slabs = new ArrayList<>();
+	private final ArrayDeque<Slab> emptySlabs = new ArrayDeque<>();
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final List<Slab>[] withSpace = new List[CLASSES];
+
+	private long usedBytes;
+
+	public SlabAllocator(long maxBytes) {
+		this.maxSlabs = (int) Math.max(1, Math.min(1 << 23, maxBytes / SLAB_SIZE));
+		for (int i = 0; i < CLASSES; i++) {
+			withSpace[i] = new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Выделяет слот под length байт и возвращает handle или 0, если память (maxBytes) кончилась.
+	 */
+	public long allocate(int length) {
+		if (length < 0 || length > MAX_VALUE_SIZE) {
+			throw new IllegalArgumentException("Value size " + length + " exceeds " + MAX_VALUE_SIZE + " bytes");
+		}
+		int sizeClass = sizeClassOf(length);
+		List<Slab> candidates = withSpace[sizeClass];
+		Slab slab;
+		if (!candidates.isEmpty()) {
+			slab = candidates.get(candidates.size() - 1);
+		} else {
+			slab = newSlab();
+			if (slab == null) {
+				return 0;
+			}
+			slab.sizeClass = sizeClass;
+			candidates.add(slab);
+		}
+		int offset = slab.take();
+		if (!slab.hasSpace()) {
+			candidates.remove(candidates.size() - 1);
+		}
+		usedBytes += slotSize(sizeClass);
+		return ((long) slab.id << 40) | ((long) offset << 16) | length;
+	}
+
+	public void free(long handle) {
+		Slab slab = slabs.get(slabId(handle) - 1);
+		boolean wasFull = !slab.hasSpace();
+		slab.release(offset(handle));
+		usedBytes -= slotSize(slab.sizeClass);
+		if (slab.used == 0) {
+			// слаб пуст целиком - отдаём его в общий пул, его может взять любой класс
+			if (!wasFull) {
+				withSpace[slab.sizeClass].remove(slab);
+			}
+			slab.reset();
+			emptySlabs.push(slab);
+		} else if (wasFull) {
+			withSpace[slab.sizeClass].add(slab);
+		}
+	}
+
+	/**
+	 * Можно ли выделить length байт, не вытесняя ничего.
+	 */
+	public boolean canAllocate(int length) {
+		return !withSpace[sizeClassOf(length)].isEmpty() || !emptySlabs.isEmpty() || slabs.size() < maxSlabs;
+	}
+
+	/**
+	 * Слаб, которому принадлежит handle. Для чтения берётся duplicate(), чтобы не трогать position/limit общего буфера.
+	 */
+	public ByteBuffer buffer(long handle) {
+		return slabs.get(slabId(handle) - 1).buffer;
+	}
+
+	public static int sizeClassOf(int length) {
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, length) - 1);
+		return Math.max(0, bits - MIN_CLASS_BITS);
+	}
+
+	public static int slotSize(int sizeClass) {
+		return 1 << (sizeClass + MIN_CLASS_BITS);
+	}
+
+	public static int slabId(long handle) {
+		return (int) (handle >>> 40);
+	}
+
+	public static int offset(long handle) {
+		return (int) (handle >>> 16) & 0xFFFFFF;
+	}
+
+	public static int length(long handle) {
+		return (int) handle & 0xFFFF;
+	}
+
+	public static int sizeClassOfHandle(long handle) {
+		return sizeClassOf(length(handle));
+	}
+
+	public long usedBytes() {
+		return usedBytes;
+	}
+
+	public long reservedBytes() {
+		return (long) slabs.size() * SLAB_SIZE;
+	}
+
+	private Slab newSlab() {
+		if (!emptySlabs.isEmpty()) {
+			return emptySlabs.pop();
+		}
+		if (slabs.size() >= maxSlabs) {
+			return null;
+		}
+		Slab slab = new Slab(slabs.size() + 1, ByteBuffer.allocateDirect(SLAB_SIZE));
+		slabs.add(slab);
+		return slab;
+	}
+}
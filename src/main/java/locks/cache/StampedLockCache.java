@@ -0,0 +1,157 @@
+package locks.cache;
+
+import locks.CacheWithReadWriteLock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Кэш с оптимистичным чтением через StampedLock.
+ *
+ * Даже незанятый readLock() в ReentrantReadWriteLock - это запись в общий счётчик читателей, т.е. при большом
+ * количестве чтений кэш-линия со счётчиком постоянно перебрасывается между ядрами, и читатели тормозят друг друга,
+ * хотя ничего не меняют. Оптимистичное чтение StampedLock ничего не пишет: tryOptimisticRead() возвращает "штамп"
+ * (версию), мы читаем данные без блокировки, а validate(stamp) проверяет, не было ли за это время записи. Если была -
+ * повторяем, а после нескольких неудач берём обычную блокировку на чтение.
+ *
+ * Для этого сама структура должна переживать чтение одновременно с записью - читатель не должен ни упасть, ни
+ * зациклиться на недописанных данных. Поэтому:
+ * - таблица с открытой адресацией хранит неизменяемые Entry (final-поля), так что запись читается либо целиком, либо
+ *   никак; обновление значения - это замена Entry, а не изменение полей;
+ * - при расширении создаётся новый массив, а старый не меняется (copy-on-resize), так что длина массива, по которому
+ *   идёт читатель, постоянна, и проход ограничен его длиной;
+ * - удалений нет, поэтому цепочки пробирования только растут.
+ * Всё, что читатель мог прочитать "не так", отсекает validate().
+ */
+public class StampedLockCache implements Cache {
+
+	private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+	private static final class Entry {
+
+		private final long key;
+		private final String value;
+
+		Entry(long key, String value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private final StampedLock lock = new StampedLock();
+	private Entry[] table = new Entry[16];
+	private int size;
+
+	@Override
+	public String put(Long key, String value) {
+		return put(key.longValue(), value);
+	}
+
+	@Override
+	public String get(Long key) {
+		return get(key.longValue());
+	}
+
+	@Override
+	public String get(long key) {
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				String value = find(table, key);
+				if (lock.validate(stamp)) {
+					return value;
+				}
+			}
+		}
+		long stamp = lock.readLock();
+		try {
+			return find(table, key);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public String put(long key, String value) {
+		long stamp = lock.writeLock();
+		try {
+			Entry[] current = table;
+			int mask = current.length - 1;
+			int i = slot(key, mask);
+			for (Entry entry; (entry = current[i]) != null; i = (i + 1) & mask) {
+				if (entry.key == key) {
+					current[i] = new Entry(key, value);
+					return entry.value;
+				}
+			}
+			current[i] = new Entry(key, value);
+			if (++size > current.length / 3 * 2) {
+				table = resize(current);
+			}
+			return null;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int result = size;
+		if (lock.validate(stamp)) {
+			return result;
+		}
+		stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private static String find(Entry[] current, long key) {
+		int mask = current.length - 1;
+		int i = slot(key, mask);
+		for (int probes = 0; probes < current.length; probes++, i = (i + 1) & mask) {
+			Entry entry = current[i];
+			if (entry == null) {
+				return null;
+			}
+			if (entry.key == key) {
+				return entry.value;
+			}
+		}
+		return null;
+	}
+
+	private static Entry[] resize(Entry[] current) {
+		Entry[] next = new Entry[current.length << 1];
+		int mask = next.length - 1;
+		for (Entry entry : current) {
+			if (entry != null) {
+				int i = slot(entry.key, mask);
+				while (next[i] != null) {
+					i = (i + 1) & mask;
+				}
+				next[i] = entry;
+			}
+		}
+		return next;
+	}
+
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Map<String, Supplier<Cache>> caches = new LinkedHashMap<>();
+		caches.put("CacheWithReadWriteLock", CacheWithReadWriteLock::new);
+		caches.put("StampedLockCache", StampedLockCache::new);
+
+		CacheBenchmark.run(caches, 95, 1_000, 1_000);
+		CacheBenchmark.run(caches, 99, 1_000, 1_000);
+	}
+}
@@ -0,0 +1,141 @@
+package locks.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров (Varghese & Lauck) для истечения TTL без сканирования всех записей.
+ *
+ * Уровень колеса - это 64 корзины, каждая корзина - двусвязный список таймеров. На нулевом уровне корзина покрывает
+ * один тик (2^20 нс, около миллисекунды), на каждом следующем - в 64 раза больше. Таймер кладётся на самый нижний
+ * уровень, диапазон которого покрывает время до его срабатывания, т.е. и постановка, и снятие таймера - O(1).
+ *
+ * advance(now) проходит только корзины, время которых наступило с прошлого вызова. Таймеры из корзины верхнего
+ * уровня либо срабатывают, либо перекладываются ниже (cascade), ближе к своему точному времени. Каждый таймер
+ * перекладывается не больше, чем количество уровней, поэтому амортизированная стоимость - O(1) на таймер.
+ *
+ * Класс не потокобезопасный, вызывается под блокировкой кэша.
+ */
+public class TimerWheel {
+
+	/**
+	 * Таймер встраивается прямо в запись кэша, чтобы не создавать отдельных объектов на каждую запись.
+	 */
+	public abstract static class Timer {
+
+		long expiresAt;
+		Timer previous;
+		Timer next;
+
+		public long expiresAt() {
+			return expiresAt;
+		}
+
+		boolean isScheduled() {
+			return previous != null;
+		}
+	}
+
+	private static final int LEVELS = 5;
+	private static final int BUCKET_BITS = 6;
+	private static final int BUCKETS = 1 << BUCKET_BITS;
+	private static final int TICK_BITS = 20;
+
+	private final Timer[][] wheel = new Timer[LEVELS][BUCKETS];
+	private long time;
+
+	public TimerWheel(long now) {
+		this.time = now;
+		for (Timer[] level : wheel) {
+			for (int i = 0; i < BUCKETS; i++) {
+				Timer sentinel = new Timer() { };
+				sentinel.previous = sentinel;
+				sentinel.next = sentinel;
+				level[i] = sentinel;
+			}
+		}
+	}
+
+	public void schedule(Timer timer, long expiresAt) {
+		if (timer.isScheduled()) {
+			unlink(timer);
+		}
+		timer.expiresAt = expiresAt;
+		link(bucketFor(expiresAt), timer);
+	}
+
+	public void deschedule(Timer timer) {
+		if (timer.isScheduled()) {
+			unlink(timer);
+		}
+	}
+
+	/**
+	 * Сдвигает время колеса на now и передаёт onExpire все таймеры со временем не позже now.
+	 */
+	public void advance(long now, Consumer<Timer> onExpire) {
+		long previous = time;
+		time = now;
+		for (int level = 0; level < LEVELS; level++) {
+			int shift = shift(level);
+			long previousTicks = previous >> shift;
+			long currentTicks = now >> shift;
+			if (currentTicks - previousTicks <= 0) {
+				break;
+			}
+			// корзина previousTicks тоже: в неё могли попасть таймеры, срабатывающие в том же тике;
+			// сдвиг больше чем на оборот - это просто все корзины уровня
+			int buckets = (int) Math.min(currentTicks - previousTicks + 1, BUCKETS);
+			for (int i = 0; i < buckets; i++) {
+				expire(wheel[level][(int) ((previousTicks + i) & (BUCKETS - 1))], now, onExpire);
+			}
+		}
+	}
+
+	private void expire(Timer sentinel, long now, Consumer<Timer> onExpire) {
+		Timer timer = sentinel.next;
+		sentinel.previous = sentinel;
+		sentinel.next = sentinel;
+		while (timer != sentinel) {
+			Timer next = timer.next;
+			timer.previous = null;
+			timer.next = null;
+			if (timer.expiresAt - now <= 0) {
+				onExpire.accept(timer);
+			} else {
+				link(bucketFor(timer.expiresAt), timer);
+			}
+			timer = next;
+		}
+	}
+
+	private Timer bucketFor(long expiresAt) {
+		long delay = Math.max(0, expiresAt - time);
+		for (int level = 0; level < LEVELS - 1; level++) {
+			if (delay < (1L << shift(level + 1))) {
+				return wheel[level][(int) ((expiresAt >> shift(level)) & (BUCKETS - 1))];
+			}
+		}
+		// дальше верхнего уровня - в корзину, которая пройдёт раньше всех, оттуда таймер переложится заново
+		int top = LEVELS - 1;
+		long at = Math.min(expiresAt, time + (1L << shift(LEVELS)) - 1);
+		return wheel[top][(int) ((at >> shift(top)) & (BUCKETS - 1))];
+	}
+
+	private static int shift(int level) {
+		return TICK_BITS + level * BUCKET_BITS;
+	}
+
+	private static void link(Timer sentinel, Timer timer) {
+		timer.previous = sentinel.previous;
+		timer.next = sentinel;
+		sentinel.previous.next = timer;
+		sentinel.previous = timer;
+	}
+
+	private static void unlink(Timer timer) {
+		timer.previous.next = timer.next;
+		timer.next.previous = timer.previous;
+		timer.previous = null;
+		timer.next = null;
+	}
+}
@@ -0,0 +1,373 @@
+package locks.cache;
+
+import collections.LongObjectHashMap;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Кэш с политикой W-TinyLFU (как в Caffeine) и истечением записей по TTL.
+ *
+ * В чистом LRU любой новый ключ сразу попадает в кэш и выталкивает самый старый. Ключи, к которым обращаются один раз
+ * (one-hit wonders), и длинные последовательные проходы по данным (scan) так вымывают из кэша действительно горячие
+ * ключи. Здесь кэш разбит на части:
+ * - окно (window, 1% размера) - обычный LRU, через который проходят все новые ключи;
+ * - основная часть (main) - сегментированный LRU: probation (испытательный срок) и protected (80% основной части).
+ *   Повторное обращение к записи в probation переводит её в protected.
+ * Когда окно переполнено, его самый старый ключ - кандидат - пытается попасть в основную часть. Его частота (из
+ * FrequencySketch) сравнивается с частотой жертвы - самой старой записи probation; в кэше остаётся более частый.
+ * Так ключ, встреченный один раз, не может вытеснить ключ, к которому обращались много раз.
+ *
+ * TTL: у записи может быть время жизни. Истечение ведёт TimerWheel: вместо периодического сканирования всех записей
+ * каждая операция двигает колесо до текущего времени, и истёкшие записи удаляются за амортизированное O(1).
+ *
+ * Политика меняет общие списки даже при чтении, поэтому всё состояние под одной блокировкой. Caffeine в этом месте
+ * откладывает обновление политики через буферы, но для сравнения качества вытеснения это не нужно.
+ */
+public class TinyLfuCache implements Cache {
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	private static final class Node extends TimerWheel.Timer {
+
+		final long key;
+		String value;
+		int queue;
+		Node accessPrevious;
+		Node accessNext;
+
+		Node(long key, String value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Двусвязный список в порядке доступа: голова - самая давно использованная запись.
+	 */
+	private static final class AccessOrder {
+
+		final Node head = new Node(0, null);
+		int size;
+
+		AccessOrder() {
+			head.accessPrevious = head;
+			head.accessNext = head;
+		}
+
+		void addLast(Node node) {
+			node.accessPrevious = head.accessPrevious;
+			node.accessNext = head;
+			head.accessPrevious.accessNext = node;
+			head.accessPrevious = node;
+			size++;
+		}
+
+		void remove(Node node) {
+			node.accessPrevious.accessNext = node.accessNext;
+			node.accessNext.accessPrevious = node.accessPrevious;
+			node.accessPrevious = null;
+			node.accessNext = null;
+			size--;
+		}
+
+		void moveToLast(Node node) {
+			remove(node);
+			addLast(node);
+		}
+
+		Node first() {
+			return head.accessNext == head ? null : head.accessNext;
+		}
+	}
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LongObjectHashMap<Node> data = new LongObjectHashMap<>();
+	private final FrequencySketch sketch;
+	private final TimerWheel timerWheel;
+	private final LongSupplier ticker;
+	private final long defaultTtlNanos;
+
+	private final AccessOrder[] queues = {new AccessOrder(), new AccessOrder(), new AccessOrder()};
+	private final int maxWindow;
+	private final int maxMain;
+	private final int maxProtected;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+
+	public TinyLfuCache(int maximumSize) {
+		this(maximumSize, 0, TimeUnit.NANOSECONDS, System::nanoTime);
+	}
+
+	public TinyLfuCache(int maximumSize, long defaultTtl, TimeUnit unit) {
+		this(maximumSize, defaultTtl, unit, System::nanoTime);
+	}
+
+	/**
+	 * @param defaultTtl время жизни записей, добавленных через put(key, value); 0 - без истечения
+	 * @param ticker     источник времени в наносекундах (подменяется для моделирования)
+	 */
+	public TinyLfuCache(int maximumSize, long defaultTtl, TimeUnit unit, LongSupplier ticker) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+		}
+		this.maxWindow = Math.max(1, maximumSize / 100);
+		this.maxMain = Math.max(1, maximumSize - maxWindow);
+		this.maxProtected = maxMain * 8 / 10;
+		this.sketch = new FrequencySketch(maximumSize);
+		this.ticker = ticker;
+		this.timerWheel = new TimerWheel(ticker.getAsLong());
+		this.defaultTtlNanos = unit.toNanos(defaultTtl);
+	}
+
+	@Override
+	public String put(Long key, String value) {
+		return put(key.longValue(), value);
+	}
+
+	@Override
+	public String get(Long key) {
+		return get(key.longValue());
+	}
+
+	@Override
+	public String put(long key, String value) {
+		return put(key, value, defaultTtlNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Добавляет запись с собственным временем жизни (ttl = 0 - без истечения).
+	 */
+	public String put(long key, String value, long ttl, TimeUnit unit) {
+		lock.lock();
+		try {
+			long now = ticker.getAsLong();
+			expire(now);
+			sketch.increment(key);
+
+			Node node = data.get(key);
+			String previous = null;
+			if (node != null) {
+				previous = node.value;
+				node.value = value;
+				onAccess(node);
+			} else {
+				node = new Node(key, value);
+				data.put(key, node);
+				node.queue = WINDOW;
+				queues[WINDOW].addLast(node);
+				if (queues[WINDOW].size > maxWindow) {
+					admit(queues[WINDOW].first());
+				}
+			}
+
+			if (ttl > 0) {
+				timerWheel.schedule(node, now + unit.toNanos(ttl));
+			} else {
+				timerWheel.deschedule(node);
+			}
+			return previous;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String get(long key) {
+		lock.lock();
+		try {
+			long now = ticker.getAsLong();
+			expire(now);
+			sketch.increment(key);
+
+			Node node = data.get(key);
+			if (node == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			onAccess(node);
+			return node.value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return data.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void onAccess(Node node) {
+		switch (node.queue) {
+			case WINDOW:
+			case PROTECTED:
+				queues[node.queue].moveToLast(node);
+				break;
+			case PROBATION:
+				queues[PROBATION].remove(node);
+				node.queue = PROTECTED;
+				queues[PROTECTED].addLast(node);
+				if (queues[PROTECTED].size > maxProtected) {
+					Node demoted = queues[PROTECTED].first();
+					queues[PROTECTED].remove(demoted);
+					demoted.queue = PROBATION;
+					queues[PROBATION].addLast(demoted);
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unknown queue " + node.queue);
+		}
+	}
+
+	/**
+	 * Кандидат из окна переходит в probation; если основная часть переполнена, из кандидата и жертвы остаётся
+	 * тот, к кому обращались чаще (при равенстве - жертва, уже доказавшая свою полезность).
+	 */
+	private void admit(Node candidate) {
+		queues[WINDOW].remove(candidate);
+		candidate.queue = PROBATION;
+		queues[PROBATION].addLast(candidate);
+
+		if (queues[PROBATION].size + queues[PROTECTED].size <= maxMain) {
+			return;
+		}
+		Node victim = queues[PROBATION].first();
+		if (victim == candidate) {
+			victim = queues[PROTECTED].first();
+		}
+		if (victim == null || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+			evict(victim == null ? candidate : victim);
+		} else {
+			evict(candidate);
+		}
+	}
+
+	private void evict(Node node) {
+		remove(node);
+		evictions++;
+	}
+
+	private void remove(Node node) {
+		queues[node.queue].remove(node);
+		timerWheel.deschedule(node);
+		data.remove(node.key);
+	}
+
+	private void expire(long now) {
+		timerWheel.advance(now, timer -> {
+			remove((Node) timer);
+			expirations++;
+		});
+	}
+
+	public String stats() {
+		lock.lock();
+		try {
+			long requests = hits + misses;
+			return String.format("hits=%d, misses=%d, hitRate=%.2f%%, evictions=%d, expirations=%d", hits, misses,
+					requests == 0 ? 0 : 100.0 * hits / requests, evictions, expirations);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// ================================================================================================================
+
+	/**
+	 * Доля попаданий на трассе обращений: при промахе значение "загружается" и кладётся в кэш.
+	 */
+	private static double hitRate(Cache cache, long[] trace) {
+		long hits = 0;
+		for (long key : trace) {
+			if (cache.get(key) != null) {
+				hits++;
+			} else {
+				cache.put(key, "v");
+			}
+		}
+		return 100.0 * hits / trace.length;
+	}
+
+	/**
+	 * Распределение Ципфа: ключ k (начиная с 0) выбирается с вероятностью, пропорциональной 1 / (k + 1)^exponent.
+	 */
+	private static long[] zipfTrace(int keys, double exponent, int length, Random random) {
+		double[] cumulative = new double[keys];
+		double sum = 0;
+		for (int k = 0; k < keys; k++) {
+			sum += 1 / Math.pow(k + 1, exponent);
+			cumulative[k] = sum;
+		}
+		long[] trace = new long[length];
+		for (int i = 0; i < length; i++) {
+			double point = random.nextDouble() * sum;
+			int low = 0;
+			int high = keys - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (cumulative[middle] < point) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			// перемешиваем, чтобы популярность ключа не совпадала с его порядковым номером
+			trace[i] = low * 0x9E3779B97F4A7C15L;
+		}
+		return trace;
+	}
+
+	/**
+	 * Ципф, в который время от времени вклиниваются последовательные проходы по ключам, которых больше нигде нет.
+	 */
+	private static long[] scanTrace(int keys, int length, int scanLength, int scanEvery, Random random) {
+		long[] zipf = zipfTrace(keys, 0.9, length, random);
+		long[] trace = new long[length];
+		long scanKey = Long.MIN_VALUE;
+		for (int i = 0, z = 0; i < length; i++) {
+			if (i % scanEvery < scanLength) {
+				trace[i] = scanKey++;
+			} else {
+				trace[i] = zipf[z++];
+			}
+		}
+		return trace;
+	}
+
+	public static void main(String[] args) {
+
+		Random random = new Random(42);
+		int cacheSize = 1_000;
+		long[] zipf = zipfTrace(100_000, 0.9, 2_000_000, random);
+		long[] scans = scanTrace(100_000, 2_000_000, 5_000, 20_000, random);
+
+		System.out.printf("Zipfian:    LRU = %.2f%%, W-TinyLFU = %.2f%%%n",
+				hitRate(new SegmentedLruCache(cacheSize, 1), zipf), hitRate(new TinyLfuCache(cacheSize), zipf));
+		System.out.printf("Scan-heavy: LRU = %.2f%%, W-TinyLFU = %.2f%%%n",
+				hitRate(new SegmentedLruCache(cacheSize, 1), scans), hitRate(new TinyLfuCache(cacheSize), scans));
+
+		// TTL на подменённых часах: 10_000 записей по 1 секунде, потом прыжок времени на 2 секунды
+		long[] clock = {0};
+		TinyLfuCache expiring = new TinyLfuCache(100_000, 1, TimeUnit.SECONDS, () -> clock[0]);
+		for (long key = 0; key < 10_000; key++) {
+			expiring.put(key, "v");
+			clock[0] += TimeUnit.MICROSECONDS.toNanos(50);
+		}
+		System.out.println("Before expiry: size = " + expiring.size());
+		clock[0] += TimeUnit.SECONDS.toNanos(2);
+		expiring.get(0L);
+		System.out.println("After 2 seconds: size = " + expiring.size() + ", " + expiring.stats());
+	}
+}
@@ -0,0 +1,392 @@
+package locks.cache;
+
+import locks.CacheWithReadWriteLock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш с отложенной записью (write-behind) в BackingStore.
+ *
+ * При сквозной записи (write-through) каждый put() ждал бы ввода-вывода в хранилище. Здесь put() сразу обновляет
+ * кэш и только помечает ключ "грязным", а фоновый поток-сбрасыватель пишет грязные ключи в хранилище пачками:
+ * когда набралось maxBatchSize ключей или самый старый грязный ключ ждёт дольше maxDelay.
+ *
+ * Повторные записи одного ключа до сброса схлопываются: в хранилище уйдёт только последнее значение, а ключ
+ * сохраняет место в очереди (и возраст) от первой записи - LinkedHashMap в порядке вставки.
+ *
+ * Обратное давление: грязных ключей не больше maxDirty, причём ключи пачки, которая сейчас пишется, тоже считаются -
+ * место освобождается только после успешной записи. Когда очередь полна, put() нового ключа ждёт на Condition,
+ * пока сбрасыватель не разгрузит очередь (запись уже грязного ключа не ждёт - она место не занимает). Так при
+ * медленном хранилище писатели замедляются, а не съедают всю память.
+ *
+ * Если хранилище бросило исключение, ключи пачки возвращаются в начало очереди в прежнем порядке и с прежним
+ * возрастом (если ключ успели записать заново, берётся новое значение) и сбрасываются при следующей попытке. Сбрасыватель повторяет попытки, пока работает;
+ * flush() и close() делают один проход и сообщают об ошибке исключением, а не крутятся, пока хранилище не оживёт.
+ *
+ * Писать в хранилище могут и сбрасыватель, и flush() из другого потока; отдельная блокировка writeLock держится
+ * от взятия пачки до конца её записи (и возврата в очередь при ошибке), поэтому пачки с одним и тем же ключом
+ * не обгоняют друг друга. После close() кэш новых записей не принимает.
+ */
+public class WriteBehindCache implements Cache, Closeable {
+
+	private static final class Dirty {
+
+		String value;
+		final long since;
+
+		Dirty(String value, long since) {
+			this.value = value;
+			this.since = since;
+		}
+	}
+
+	private final Cache cache;
+	private final BackingStore store;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final int maxDirty;
+
+	private final Lock lock = new ReentrantLock();
+	// порядок захвата: writeLock, потом lock
+	private final Lock writeLock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final Condition flushNeeded = lock.newCondition();
+	private final LinkedHashMap<Long, Dirty> dirty = new LinkedHashMap<>();
+	private final Thread flusher;
+	private boolean running = true;
+	// ключи пачки, которая пишется в хранилище; занимают место в очереди до конца записи
+	private int inFlight;
+
+	// метрики, меняются под lock
+	private long writes;
+	private long coalesced;
+	private long backpressureWaits;
+	private long flushedBatches;
+	private long flushedEntries;
+	private long failedFlushes;
+	private int lastBatchSize;
+	private long lastFlushLagNanos;
+	private long maxFlushLagNanos;
+
+	public WriteBehindCache(Cache cache, BackingStore store, int maxBatchSize, long maxDelay, TimeUnit unit, int maxDirty) {
+		if (maxBatchSize <= 0 || maxDirty < maxBatchSize) {
+			throw new IllegalArgumentException("Require 0 < maxBatchSize <= maxDirty");
+		}
+		this.cache = cache;
+		this.store = store;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		this.maxDirty = maxDirty;
+		this.flusher = new Thread(this::flushLoop, "write-behind-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	@Override
+	public String put(Long key, String value) {
+		lock.lock();
+		try {
+			if (!dirty.containsKey(key) && dirty.size() + inFlight >= maxDirty) {
+				backpressureWaits++;
+				while (!dirty.containsKey(key) && dirty.size() + inFlight >= maxDirty && running) {
+					notFull.await();
+				}
+			}
+			// после close() запись никто бы уже не сбросил
+			if (!running) {
+				throw new IllegalStateException("WriteBehindCache is closed");
+			}
+			// кэш и очередь меняются под одной блокировкой, иначе две записи одного ключа могли бы попасть в кэш
+			// и в хранилище в разном порядке
+			String previous = cache.put(key, value);
+			Dirty entry = dirty.get(key);
+			if (entry != null) {
+				entry.value = value;
+				coalesced++;
+			} else {
+				dirty.put(key, new Dirty(value, System.nanoTime()));
+				if (dirty.size() >= maxBatchSize) {
+					flushNeeded.signal();
+				}
+			}
+			writes++;
+			return previous;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the write-behind queue", e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String get(Long key) {
+		return cache.get(key);
+	}
+
+	private void flushLoop() {
+		while (true) {
+			lock.lock();
+			try {
+				while (running && !batchReady()) {
+					long wait = dirty.isEmpty() ? maxDelayNanos : maxDelayNanos - age(oldest());
+					flushNeeded.awaitNanos(Math.max(1, wait));
+				}
+				// остаток сбросит close() в своём потоке
+				if (!running) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				flushBatch();
+			} catch (IOException e) {
+				// ключи уже вернулись в очередь; полная очередь сразу дала бы новую готовую пачку, поэтому упавшее
+				// хранилище повторяем не чаще раза в maxDelay
+				if (!pause()) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ждёт maxDelay или close(); false - если кэш закрыт.
+	 */
+	private boolean pause() {
+		lock.lock();
+		try {
+			long nanos = maxDelayNanos;
+			while (running && nanos > 0) {
+				nanos = flushNeeded.awaitNanos(nanos);
+			}
+			return running;
+		} catch (InterruptedException e) {
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean batchReady() {
+		return dirty.size() >= maxBatchSize || (!dirty.isEmpty() && age(oldest()) >= maxDelayNanos);
+	}
+
+	/**
+	 * Забирает до maxBatchSize самых старых ключей. Вызывается под lock. Место в очереди они освободят в write().
+	 */
+	private LinkedHashMap<Long, Dirty> takeBatch() {
+		LinkedHashMap<Long, Dirty> batch = new LinkedHashMap<>();
+		if (!dirty.isEmpty()) {
+			lastFlushLagNanos = age(oldest());
+			maxFlushLagNanos = Math.max(maxFlushLagNanos, lastFlushLagNanos);
+		}
+		Iterator<Map.Entry<Long, Dirty>> iterator = dirty.entrySet().iterator();
+		while (iterator.hasNext() && batch.size() < maxBatchSize) {
+			Map.Entry<Long, Dirty> entry = iterator.next();
+			batch.put(entry.getKey(), entry.getValue());
+			iterator.remove();
+		}
+		inFlight += batch.size();
+		return batch;
+	}
+
+	/**
+	 * Возвращает неудачную пачку в начало очереди. Вызывается под lock.
+	 */
+	private void requeue(LinkedHashMap<Long, Dirty> batch) {
+		LinkedHashMap<Long, Dirty> rest = new LinkedHashMap<>(dirty);
+		dirty.clear();
+		batch.forEach((key, entry) -> {
+			// ключ записали заново, пока пачка писалась: значение новее, а возраст - от первой записи
+			Dirty newer = rest.remove(key);
+			if (newer != null) {
+				entry.value = newer.value;
+			}
+			dirty.put(key, entry);
+		});
+		dirty.putAll(rest);
+	}
+
+	/**
+	 * Берёт и записывает одну пачку под writeLock; возвращает её размер.
+	 */
+	private int flushBatch() throws IOException {
+		writeLock.lock();
+		try {
+			LinkedHashMap<Long, Dirty> batch;
+			lock.lock();
+			try {
+				batch = takeBatch();
+			} finally {
+				lock.unlock();
+			}
+			write(batch);
+			return batch.size();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Вызывается под writeLock. При ошибке возвращает пачку в очередь и бросает исключение дальше.
+	 */
+	private void write(LinkedHashMap<Long, Dirty> batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		Map<Long, String> values = new LinkedHashMap<>();
+		batch.forEach((key, entry) -> values.put(key, entry.value));
+		try {
+			store.writeAll(values);
+			lock.lock();
+			try {
+				flushedBatches++;
+				flushedEntries += batch.size();
+				lastBatchSize = batch.size();
+				inFlight -= batch.size();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		} catch (IOException | RuntimeException e) {
+			lock.lock();
+			try {
+				failedFlushes++;
+				inFlight -= batch.size();
+				requeue(batch);
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			throw e instanceof IOException ? (IOException) e : new IOException("Backing store failed", e);
+		}
+	}
+
+	/**
+	 * Сбрасывает в вызывающем потоке всё, что накопилось к моменту вызова, - один проход: записи, пришедшие во время
+	 * сброса, могут остаться сбрасывателю, а на первой ошибке хранилища метод останавливается и бросает её
+	 * (ключи неудачной пачки остаются в очереди).
+	 */
+	public void flush() throws IOException {
+		int remaining = queueDepth();
+		while (remaining > 0) {
+			int written = flushBatch();
+			if (written == 0) {
+				return;
+			}
+			remaining -= written;
+		}
+	}
+
+	/**
+	 * Останавливает сбрасыватель и сбрасывает остаток (см. flush()); если хранилище не приняло его, бросает
+	 * IOException, а несброшенные ключи видны в queueDepth().
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			running = false;
+			flushNeeded.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+	private Dirty oldest() {
+		return dirty.values().iterator().next();
+	}
+
+	private static long age(Dirty entry) {
+		return System.nanoTime() - entry.since;
+	}
+
+	public int queueDepth() {
+		lock.lock();
+		try {
+			return dirty.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public String metrics() {
+		lock.lock();
+		try {
+			return String.format("writes=%d, coalesced=%d, queueDepth=%d, batches=%d, flushed=%d, lastBatch=%d, "
+							+ "avgBatch=%.1f, lastLag=%.1f ms, maxLag=%.1f ms, backpressureWaits=%d, failedFlushes=%d",
+					writes, coalesced, dirty.size(), flushedBatches, flushedEntries, lastBatchSize,
+					flushedBatches == 0 ? 0.0 : (double) flushedEntries / flushedBatches,
+					lastFlushLagNanos / 1e6, maxFlushLagNanos / 1e6, backpressureWaits, failedFlushes);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Path file = Paths.get(System.getProperty("java.io.tmpdir"), "write-behind-store.log");
+		Files.deleteIfExists(file);
+		FileBackingStore store = new FileBackingStore(file);
+
+		CacheWithReadWriteLock backing = new CacheWithReadWriteLock();
+		WriteBehindCache cache = new WriteBehindCache(backing, store, 500, 50, TimeUnit.MILLISECONDS, 2_000);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Long>> futures = new ArrayList<>();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+			for (int i = 0; i < 4; i++) {
+				futures.add(executorService.submit(() -> {
+					long puts = 0;
+					while (System.nanoTime() < deadline) {
+						long key = ThreadLocalRandom.current().nextInt(10_000);
+						cache.put(key, "value-" + key + "-" + puts++);
+					}
+					return puts;
+				}));
+			}
+			for (int i = 0; i < 4; i++) {
+				Thread.sleep(500);
+				System.out.println(cache.metrics());
+			}
+			long puts = 0;
+			for (Future<Long> future : futures) {
+				puts += future.get();
+			}
+			System.out.println("Puts: " + puts);
+		} finally {
+			executorService.shutdown();
+		}
+
+		cache.close();
+		System.out.println("After close: " + cache.metrics());
+
+		Map<Long, String> stored = store.readAll();
+		long mismatches = stored.entrySet().stream()
+				.filter(entry -> !entry.getValue().equals(backing.get(entry.getKey())))
+				.count();
+		System.out.println("Keys in store: " + stored.size() + ", differing from cache: " + mismatches);
+		Files.deleteIfExists(file);
+	}
+}
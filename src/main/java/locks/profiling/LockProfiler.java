@@ -0,0 +1,114 @@
+package locks.profiling;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Профилировщик конкуренции за блокировки.
+ *
+ * Когда программа с блокировками тормозит, из кода не видно, какая блокировка "горячая": сколько потоки ждут
+ * её захвата, сколько держат, как часто приходится ждать. LockProfiler.wrap() оборачивает Lock/ReadWriteLock
+ * в декоратор, который это измеряет; оборачивается только место создания блокировки, вызовы lock()/unlock()/
+ * await() в коде не меняются:
+ *
+ * private final Lock lock = LockProfiler.wrap("orders", new ReentrantLock());
+ *
+ * Профилирование включается свойством -Dlocks.profiling=true. Без него wrap() возвращает исходную блокировку,
+ * т.е. выключенный профилировщик ничего не стоит. Остальные свойства:
+ * - locks.profiling.sampleEvery=N - замерять время только у каждого N-го (в среднем) захвата, по умолчанию у всех;
+ * - locks.profiling.dumpSeconds=S - раз в S секунд печатать отчёт в System.out.
+ *
+ * Блокировки с одинаковым именем делят одну статистику (например, блокировки всех экземпляров одного класса).
+ * Каждая статистика публикуется по JMX как MXBean locks.profiling:type=Lock,name=<имя>.
+ */
+public final class LockProfiler {
+
+	public static final boolean ENABLED = Boolean.getBoolean("locks.profiling");
+	public static final int SAMPLE_EVERY = Integer.getInteger("locks.profiling.sampleEvery", 1);
+	private static final long DUMP_SECONDS = Long.getLong("locks.profiling.dumpSeconds", 0L);
+
+	private static final Map<String, LockStats> STATS = new ConcurrentHashMap<>();
+	private static ScheduledExecutorService dumper;
+
+	static {
+		if (ENABLED && DUMP_SECONDS > 0) {
+			startDump(DUMP_SECONDS, TimeUnit.SECONDS, System.out);
+		}
+	}
+
+	private LockProfiler() {
+	}
+
+	public static Lock wrap(String name, Lock lock) {
+		if (!ENABLED) {
+			return lock;
+		}
+		if (lock instanceof ReentrantLock && ((ReentrantLock) lock).isFair()) {
+			// у справедливой блокировки предварительный tryLock() обошёл бы очередь
+			ReentrantLock fair = (ReentrantLock) lock;
+			return new ProfiledLock(lock, stats(name), SAMPLE_EVERY,
+					() -> !fair.isHeldByCurrentThread() && fair.hasQueuedThreads());
+		}
+		return new ProfiledLock(lock, stats(name), SAMPLE_EVERY);
+	}
+
+	public static ReadWriteLock wrap(String name, ReadWriteLock lock) {
+		if (!ENABLED) {
+			return lock;
+		}
+		return new ProfiledReadWriteLock(lock, stats(name + ".read"), stats(name + ".write"), SAMPLE_EVERY);
+	}
+
+	/**
+	 * Статистика блокировки с этим именем; создаётся и регистрируется в JMX при первом обращении.
+	 */
+	public static LockStats stats(String name) {
+		return STATS.computeIfAbsent(name, LockProfiler::register);
+	}
+
+	private static LockStats register(String name) {
+		LockStats stats = new LockStats(name);
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(stats, new ObjectName("locks.profiling:type=Lock,name=" + ObjectName.quote(name)));
+		} catch (Exception e) {
+			// без JMX статистика всё равно доступна через report()
+			System.err.println("Cannot register lock stats '" + name + "' in JMX: " + e);
+		}
+		return stats;
+	}
+
+	public static String report() {
+		StringBuilder report = new StringBuilder("Lock profile (")
+				.append(SAMPLE_EVERY == 1 ? "all acquisitions" : "1 in " + SAMPLE_EVERY + " acquisitions timed")
+				.append(')');
+		new TreeMap<>(STATS).values().forEach(stats -> report.append(System.lineSeparator()).append(stats));
+		return report.toString();
+	}
+
+	/**
+	 * Запускает периодическую печать отчёта в фоновом потоке-демоне.
+	 */
+	public static synchronized void startDump(long period, TimeUnit unit, PrintStream out) {
+		if (dumper != null) {
+			return;
+		}
+		dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "lock-profiler-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> out.println(report()), period, period, unit);
+	}
+}
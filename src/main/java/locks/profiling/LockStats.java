@@ -0,0 +1,108 @@
+package locks.profiling;
+
+import metrics.LogLinearHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика одной именованной блокировки: сколько раз её брали, сколько из них пришлось ждать (tryLock() не
+ * прошёл сразу), и гистограммы времени ожидания, времени удержания и времени в Condition.await().
+ *
+ * Счётчики захватов считаются всегда (LongAdder дёшев и под конкуренцией), а времена - только для выборки захватов
+ * (см. LockProfiler.SAMPLE_EVERY): два вызова System.nanoTime() и запись в гистограмму на каждый захват заметно
+ * утяжелили бы короткие критические секции.
+ */
+public class LockStats implements LockStatsMXBean {
+
+	private final String name;
+
+	final LongAdder acquisitions = new LongAdder();
+	final LongAdder contended = new LongAdder();
+	final LongAdder awaits = new LongAdder();
+	final LogLinearHistogram waitNanos = new LogLinearHistogram();
+	final LogLinearHistogram holdNanos = new LogLinearHistogram();
+	final LogLinearHistogram awaitNanos = new LogLinearHistogram();
+
+	LockStats(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getAcquisitions() {
+		return acquisitions.sum();
+	}
+
+	@Override
+	public long getContendedAcquisitions() {
+		return contended.sum();
+	}
+
+	@Override
+	public double getContendedRatio() {
+		long total = acquisitions.sum();
+		return total == 0 ? 0 : (double) contended.sum() / total;
+	}
+
+	@Override
+	public double getWaitP50Micros() {
+		return waitNanos.percentile(50) / 1e3;
+	}
+
+	@Override
+	public double getWaitP99Micros() {
+		return waitNanos.percentile(99) / 1e3;
+	}
+
+	@Override
+	public double getWaitMaxMicros() {
+		return waitNanos.max() / 1e3;
+	}
+
+	@Override
+	public double getHoldP50Micros() {
+		return holdNanos.percentile(50) / 1e3;
+	}
+
+	@Override
+	public double getHoldP99Micros() {
+		return holdNanos.percentile(99) / 1e3;
+	}
+
+	@Override
+	public double getHoldMaxMicros() {
+		return holdNanos.max() / 1e3;
+	}
+
+	@Override
+	public long getAwaits() {
+		return awaits.sum();
+	}
+
+	@Override
+	public double getAwaitP99Micros() {
+		return awaitNanos.percentile(99) / 1e3;
+	}
+
+	@Override
+	public void reset() {
+		acquisitions.reset();
+		contended.reset();
+		awaits.reset();
+		waitNanos.reset();
+		holdNanos.reset();
+		awaitNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: acquisitions=%d, contended=%.1f%%%n"
+						+ "    wait  us: %s%n    hold  us: %s%n    await us: %s",
+				name, getAcquisitions(), 100 * getContendedRatio(),
+				waitNanos.summary(1e3), holdNanos.summary(1e3), awaitNanos.summary(1e3));
+	}
+}
@@ -0,0 +1,34 @@
+package locks.profiling;
+
+/**
+ * То, что LockProfiler публикует по JMX для каждой именованной блокировки (jconsole, VisualVM: домен
+ * locks.profiling). Времена - в микросекундах.
+ */
+public interface LockStatsMXBean {
+
+	String getName();
+
+	long getAcquisitions();
+
+	long getContendedAcquisitions();
+
+	double getContendedRatio();
+
+	double getWaitP50Micros();
+
+	double getWaitP99Micros();
+
+	double getWaitMaxMicros();
+
+	double getHoldP50Micros();
+
+	double getHoldP99Micros();
+
+	double getHoldMaxMicros();
+
+	long getAwaits();
+
+	double getAwaitP99Micros();
+
+	void reset();
+}
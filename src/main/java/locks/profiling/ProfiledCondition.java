@@ -0,0 +1,84 @@
+package locks.profiling;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * Декоратор Condition от ProfiledLock: засекает время в await() и не засчитывает его в удержание блокировки.
+ */
+public class ProfiledCondition implements Condition {
+
+	private final ProfiledLock lock;
+	private final Condition delegate;
+
+	ProfiledCondition(ProfiledLock lock, Condition delegate) {
+		this.lock = lock;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void await() throws InterruptedException {
+		lock.suspendHold();
+		long start = System.nanoTime();
+		try {
+			delegate.await();
+		} finally {
+			lock.resumeHold(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void awaitUninterruptibly() {
+		lock.suspendHold();
+		long start = System.nanoTime();
+		try {
+			delegate.awaitUninterruptibly();
+		} finally {
+			lock.resumeHold(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public long awaitNanos(long nanosTimeout) throws InterruptedException {
+		lock.suspendHold();
+		long start = System.nanoTime();
+		try {
+			return delegate.awaitNanos(nanosTimeout);
+		} finally {
+			lock.resumeHold(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean await(long time, TimeUnit unit) throws InterruptedException {
+		lock.suspendHold();
+		long start = System.nanoTime();
+		try {
+			return delegate.await(time, unit);
+		} finally {
+			lock.resumeHold(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean awaitUntil(Date deadline) throws InterruptedException {
+		lock.suspendHold();
+		long start = System.nanoTime();
+		try {
+			return delegate.awaitUntil(deadline);
+		} finally {
+			lock.resumeHold(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void signal() {
+		delegate.signal();
+	}
+
+	@Override
+	public void signalAll() {
+		delegate.signalAll();
+	}
+}
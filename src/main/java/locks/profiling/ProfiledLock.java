@@ -0,0 +1,164 @@
+package locks.profiling;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Декоратор Lock, который пишет в LockStats время ожидания и удержания блокировки.
+ *
+ * Захват считается конкурентным, если tryLock() не прошёл сразу - тогда засекается время до фактического захвата.
+ * Но tryLock() может пролезть без очереди там, где lock() встал бы в неё: у справедливой (fair) блокировки и у
+ * блокировки на чтение ReentrantReadWriteLock (lock() пропускает вперёд ждущего писателя, tryLock() - нет, и под
+ * профилировщиком читатели могли бы заморить писателей голодом). Обойти можно только того, кто стоит в очереди,
+ * поэтому для таких блокировок передаётся проверка queued: если в очереди кто-то есть, предварительного tryLock()
+ * нет, захват считается конкурентным и замеряется сам lock().
+ *
+ * Время удержания - от захвата до освобождения внешнего уровня (повторные захваты тем же потоком не в счёт);
+ * пока поток ждёт в Condition.await(), блокировка отпущена, и этот отрезок в удержание не входит. Состояние
+ * удержания хранится в ThreadLocal: у блокировки на чтение владельцев может быть много сразу.
+ */
+public class ProfiledLock implements Lock {
+
+	private static final class Hold {
+
+		int depth;
+		long start;
+		boolean sampled;
+	}
+
+	private final Lock delegate;
+	private final LockStats stats;
+	private final int sampleMask;
+	// null - tryLock() никого не обходит, с него можно начинать всегда
+	private final BooleanSupplier queued;
+	private final ThreadLocal<Hold> holds = ThreadLocal.withInitial(Hold::new);
+
+	ProfiledLock(Lock delegate, LockStats stats, int sampleEvery) {
+		this(delegate, stats, sampleEvery, null);
+	}
+
+	ProfiledLock(Lock delegate, LockStats stats, int sampleEvery, BooleanSupplier queued) {
+		this.delegate = delegate;
+		this.stats = stats;
+		this.sampleMask = Integer.highestOneBit(Math.max(1, sampleEvery)) - 1;
+		this.queued = queued;
+	}
+
+	public LockStats stats() {
+		return stats;
+	}
+
+	private boolean mayBarge() {
+		return queued == null || !queued.getAsBoolean();
+	}
+
+	private boolean sample() {
+		return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+	}
+
+	@Override
+	public void lock() {
+		if (mayBarge() && delegate.tryLock()) {
+			acquired(false, sample(), 0);
+			return;
+		}
+		boolean sampled = sample();
+		long start = sampled ? System.nanoTime() : 0;
+		delegate.lock();
+		acquired(true, sampled, sampled ? System.nanoTime() - start : 0);
+	}
+
+	@Override
+	public void lockInterruptibly() throws InterruptedException {
+		if (mayBarge() && delegate.tryLock()) {
+			acquired(false, sample(), 0);
+			return;
+		}
+		boolean sampled = sample();
+		long start = sampled ? System.nanoTime() : 0;
+		delegate.lockInterruptibly();
+		acquired(true, sampled, sampled ? System.nanoTime() - start : 0);
+	}
+
+	@Override
+	public boolean tryLock() {
+		if (delegate.tryLock()) {
+			acquired(false, sample(), 0);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+		if (mayBarge() && delegate.tryLock()) {
+			acquired(false, sample(), 0);
+			return true;
+		}
+		long start = System.nanoTime();
+		if (delegate.tryLock(time, unit)) {
+			acquired(true, true, System.nanoTime() - start);
+			return true;
+		}
+		return false;
+	}
+
+	private void acquired(boolean contended, boolean sampled, long waitNanos) {
+		stats.acquisitions.increment();
+		if (contended) {
+			stats.contended.increment();
+		}
+		Hold hold = holds.get();
+		if (hold.depth++ == 0) {
+			hold.sampled = sampled;
+			if (sampled) {
+				stats.waitNanos.record(waitNanos);
+				hold.start = System.nanoTime();
+			}
+		}
+	}
+
+	@Override
+	public void unlock() {
+		Hold hold = holds.get();
+		if (hold.depth > 0 && --hold.depth == 0 && hold.sampled) {
+			stats.holdNanos.record(System.nanoTime() - hold.start);
+		}
+		delegate.unlock();
+	}
+
+	/**
+	 * Перед await(): блокировка отпускается, закрываем отрезок удержания.
+	 */
+	void suspendHold() {
+		Hold hold = holds.get();
+		if (hold.sampled) {
+			stats.holdNanos.record(System.nanoTime() - hold.start);
+		}
+	}
+
+	/**
+	 * После await(): блокировка снова наша, начинаем новый отрезок.
+	 */
+	void resumeHold(long awaitNanos) {
+		stats.awaits.increment();
+		stats.awaitNanos.record(awaitNanos);
+		Hold hold = holds.get();
+		if (hold.sampled) {
+			hold.start = System.nanoTime();
+		}
+	}
+
+	@Override
+	public Condition newCondition() {
+		return new ProfiledCondition(this, delegate.newCondition());
+	}
+
+	@Override
+	public String toString() {
+		return "ProfiledLock{" + stats.getName() + ", " + delegate + '}';
+	}
+}
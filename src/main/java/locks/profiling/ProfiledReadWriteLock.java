@@ -0,0 +1,54 @@
+package locks.profiling;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ReadWriteLock, у которого блокировки на чтение и на запись профилируются по отдельности: под именами
+ * "<name>.read" и "<name>.write".
+ *
+ * У ReentrantReadWriteLock блокировка на чтение (у справедливой - и на запись) не начинает с tryLock(), когда
+ * в очереди кто-то есть (см. ProfiledLock). Для других реализаций ReadWriteLock предварительный tryLock() остаётся.
+ */
+public class ProfiledReadWriteLock implements ReadWriteLock {
+
+	private final ReadWriteLock delegate;
+	private final ProfiledLock readLock;
+	private final ProfiledLock writeLock;
+
+	ProfiledReadWriteLock(ReadWriteLock delegate, LockStats readStats, LockStats writeStats, int sampleEvery) {
+		this.delegate = delegate;
+		if (delegate instanceof ReentrantReadWriteLock) {
+			ReentrantReadWriteLock lock = (ReentrantReadWriteLock) delegate;
+			this.readLock = new ProfiledLock(lock.readLock(), readStats, sampleEvery, () -> readQueued(lock));
+			this.writeLock = new ProfiledLock(lock.writeLock(), writeStats, sampleEvery,
+					lock.isFair() ? () -> !lock.isWriteLockedByCurrentThread() && lock.hasQueuedThreads() : null);
+		} else {
+			this.readLock = new ProfiledLock(delegate.readLock(), readStats, sampleEvery);
+			this.writeLock = new ProfiledLock(delegate.writeLock(), writeStats, sampleEvery);
+		}
+	}
+
+	/**
+	 * Повторный захват чтения своим же потоком проходит без очереди и в lock(), так что tryLock() тут никого не обходит.
+	 */
+	private static boolean readQueued(ReentrantReadWriteLock lock) {
+		return lock.hasQueuedThreads() && lock.getReadHoldCount() == 0 && !lock.isWriteLockedByCurrentThread();
+	}
+
+	@Override
+	public Lock readLock() {
+		return readLock;
+	}
+
+	@Override
+	public Lock writeLock() {
+		return writeLock;
+	}
+
+	@Override
+	public String toString() {
+		return "ProfiledReadWriteLock{" + delegate + '}';
+	}
+}
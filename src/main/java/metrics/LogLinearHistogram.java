@@ -0,0 +1,129 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная гистограмма неотрицательных long-значений (обычно наносекунд) с лог-линейными корзинами,
+ * по образцу HdrHistogram.
+ *
+ * Диапазон делится на октавы [2^k, 2^(k+1)), каждая октава - на SUB_BUCKETS равных корзин. Поэтому относительная
+ * погрешность любого значения не больше 1/SUB_BUCKETS (6%) и при 10 нс, и при 10 секундах, а всех корзин
+ * на весь диапазон long - меньше тысячи. Номер корзины считается сдвигами из numberOfLeadingZeros, без логарифмов
+ * и поиска.
+ *
+ * record() - это один getAndIncrement() в AtomicLongArray плюс общие счётчики, без блокировок и без выделения
+ * памяти, так что записывать можно из горячего кода многими потоками сразу. Общие счётчики (количество, сумма,
+ * максимум) - LongAdder и LongAccumulator: при конкуренции они разносятся по ячейкам, а не становятся одной горячей
+ * строкой кэша, которую делят все записывающие потоки (разные значения и так попадают в разные корзины). Чтение (percentile() и т.д.) идёт
+ * без остановки записи и может чуть отставать от неё - для мониторинга это не важно.
+ */
+public class LogLinearHistogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.getAndIncrement(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int octave = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (octave - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (octave - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int octave = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (octave - SUB_BITS);
+	}
+
+	static long width(int bucket) {
+		return bucket < SUB_BUCKETS ? 1 : 1L << (bucket / SUB_BUCKETS - 1);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public double mean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Значение, не меньше которого percent процентов записей (с точностью до корзины; берётся середина корзины,
+	 * но не больше max()).
+	 */
+	public long percentile(double percent) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(n * percent / 100));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank) {
+				return Math.min(max.get(), lowerBound(bucket) + width(bucket) / 2);
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Добавляет к этой гистограмме все записи другой.
+	 */
+	public void add(LogLinearHistogram other) {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			long c = other.counts.get(bucket);
+			if (c != 0) {
+				counts.getAndAdd(bucket, c);
+			}
+		}
+		count.add(other.count.sum());
+		sum.add(other.sum.sum());
+		max.accumulate(other.max.get());
+	}
+
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Краткая сводка, значения делятся на scale (например, 1_000 для перевода наносекунд в микросекунды).
+	 */
+	public String summary(double scale) {
+		return String.format("n=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+				count(), mean() / scale, percentile(50) / scale, percentile(90) / scale, percentile(99) / scale,
+				percentile(99.9) / scale, max() / scale);
+	}
+}
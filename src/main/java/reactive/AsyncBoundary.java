@@ -0,0 +1,220 @@
+package reactive;
+
+import collections.MpmcArrayQueue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная граница: стадии до неё работают в своём потоке, после неё - в пуле executor.
+ *
+ * Между ними кольцевой буфер на bufferSize элементов (MpmcArrayQueue, используются только неблокирующие
+ * offer()/poll()). Выше по течению запрашивается ровно bufferSize элементов, а по мере выдачи вниз спрос
+ * пополняется пачками по 3/4 буфера - так буфер никогда не переполняется, а request() вверх уходит не на каждый
+ * элемент. Память ограничена буфером, сколько бы ни было элементов в потоке.
+ *
+ * Поток пула берётся только тогда, когда есть работа: onNext(), request() и завершение лишь увеличивают счётчик
+ * wip, и задача выдачи отправляется в executor только при переходе счётчика из нуля. Пока она работает, новые
+ * элементы подхватываются ею же, а закончив (буфер пуст или у подписчика нет спроса), она просто завершается.
+ * Ни один поток не стоит в ожидании элементов - ни здесь, ни в пуле ради этой границы.
+ */
+public class AsyncBoundary<T> implements Flow.Processor<T, T>, Flow.Subscription {
+
+	private final Executor executor;
+	private final int bufferSize;
+	private final int replenish;
+	private final MpmcArrayQueue<T> queue;
+
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicLong requested = new AtomicLong();
+	private volatile Flow.Subscription upstream;
+	private volatile Flow.Subscriber<? super T> downstream;
+	private volatile boolean done;
+	private volatile boolean cancelled;
+	private Throwable error;
+	// ошибка request(n <= 0): сигнал отдаёт поток выдачи, чтобы onError() не шёл параллельно с его onNext() (§1.3)
+	private volatile Throwable invalidRequest;
+
+	// только для потока выдачи
+	private int consumed;
+
+	// метрики
+	private final AtomicLong handoffs = new AtomicLong();
+	// пишет только поток источника (сигналы сверху последовательны), читают любые
+	private volatile int maxBuffered;
+
+	public AsyncBoundary(Executor executor, int bufferSize) {
+		// MpmcArrayQueue требует хотя бы две ячейки, а переполнение мы ловим по отказу её offer()
+		if (bufferSize < 2) {
+			throw new IllegalArgumentException("bufferSize must be at least 2: " + bufferSize);
+		}
+		this.executor = executor;
+		this.bufferSize = bufferSize;
+		this.replenish = Math.max(1, bufferSize - (bufferSize >> 2));
+		this.queue = new MpmcArrayQueue<>(bufferSize);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (downstream != null) {
+			subscriber.onSubscribe(this);
+			subscriber.onError(new IllegalStateException("AsyncBoundary supports a single subscriber"));
+			return;
+		}
+		downstream = subscriber;
+		subscriber.onSubscribe(this);
+		schedule();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (upstream != null) {
+			subscription.cancel();
+			return;
+		}
+		upstream = subscription;
+		subscription.request(bufferSize);
+	}
+
+	@Override
+	public void onNext(T item) {
+		if (!queue.offer(item)) {
+			upstream.cancel();
+			onError(new IllegalStateException("Upstream emitted more than requested"));
+			return;
+		}
+		int size = queue.size();
+		if (size > maxBuffered) {
+			maxBuffered = size;
+		}
+		schedule();
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		error = throwable;
+		done = true;
+		schedule();
+	}
+
+	@Override
+	public void onComplete() {
+		done = true;
+		schedule();
+	}
+
+	@Override
+	public void request(long n) {
+		if (n <= 0) {
+			if (invalidRequest == null) {
+				invalidRequest = Demand.nonPositive(n);
+			}
+			Flow.Subscription subscription = upstream;
+			if (subscription != null) {
+				subscription.cancel();
+			}
+		} else {
+			Demand.add(requested, n);
+		}
+		schedule();
+	}
+
+	@Override
+	public void cancel() {
+		if (!cancelled) {
+			cancelled = true;
+			Flow.Subscription subscription = upstream;
+			if (subscription != null) {
+				subscription.cancel();
+			}
+			if (wip.getAndIncrement() == 0) {
+				queue.clear();
+			}
+		}
+	}
+
+	private void schedule() {
+		if (wip.getAndIncrement() == 0) {
+			handoffs.incrementAndGet();
+			executor.execute(this::drain);
+		}
+	}
+
+	private void drain() {
+		Flow.Subscriber<? super T> subscriber = downstream;
+		int missed = 1;
+		while (true) {
+			if (subscriber != null) {
+				long demand = requested.get();
+				long emitted = 0;
+				while (emitted != demand) {
+					boolean finished = done;
+					T item = queue.poll();
+					if (terminated(finished, item == null, subscriber)) {
+						return;
+					}
+					if (item == null) {
+						break;
+					}
+					subscriber.onNext(item);
+					emitted++;
+					if (++consumed == replenish) {
+						consumed = 0;
+						upstream.request(replenish);
+					}
+				}
+				if (emitted == demand && terminated(done, queue.isEmpty(), subscriber)) {
+					return;
+				}
+				if (emitted != 0) {
+					Demand.produced(requested, emitted);
+				}
+			}
+			missed = wip.addAndGet(-missed);
+			if (missed == 0) {
+				return;
+			}
+			subscriber = downstream;
+		}
+	}
+
+	private boolean terminated(boolean finished, boolean empty, Flow.Subscriber<? super T> subscriber) {
+		if (cancelled) {
+			queue.clear();
+			return true;
+		}
+		Throwable invalid = invalidRequest;
+		if (invalid != null) {
+			cancelled = true;
+			queue.clear();
+			subscriber.onError(invalid);
+			return true;
+		}
+		if (finished && empty) {
+			cancelled = true;
+			if (error != null) {
+				subscriber.onError(error);
+			} else {
+				subscriber.onComplete();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Сколько раз выдача передавалась в executor (задач отправлено в пул).
+	 */
+	public long handoffs() {
+		return handoffs.get();
+	}
+
+	/**
+	 * Наибольшее число элементов, одновременно лежавших в буфере.
+	 */
+	public int maxBuffered() {
+		return maxBuffered;
+	}
+}
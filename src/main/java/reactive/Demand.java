@@ -0,0 +1,52 @@
+package reactive;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Учёт спроса request(n) по правилам Reactive Streams: сумма запросов насыщается на Long.MAX_VALUE ("без
+ * ограничений"), а из неограниченного спроса выданные элементы не вычитаются.
+ */
+final class Demand {
+
+	private Demand() {
+	}
+
+	/**
+	 * Добавляет n к спросу и возвращает значение до добавления.
+	 */
+	static long add(AtomicLong requested, long n) {
+		while (true) {
+			long current = requested.get();
+			if (current == Long.MAX_VALUE) {
+				return Long.MAX_VALUE;
+			}
+			long next = current + n;
+			if (next < 0) {
+				next = Long.MAX_VALUE;
+			}
+			if (requested.compareAndSet(current, next)) {
+				return current;
+			}
+		}
+	}
+
+	/**
+	 * Вычитает выданные элементы и возвращает оставшийся спрос.
+	 */
+	static long produced(AtomicLong requested, long n) {
+		while (true) {
+			long current = requested.get();
+			if (current == Long.MAX_VALUE) {
+				return Long.MAX_VALUE;
+			}
+			long next = current - n;
+			if (requested.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	static IllegalArgumentException nonPositive(long n) {
+		return new IllegalArgumentException("Rule 3.9: request must be positive, was " + n);
+	}
+}
@@ -0,0 +1,127 @@
+package reactive;
+
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Слияние (fusion) синхронных стадий: подряд идущие map() и filter() собираются в одну функцию, и на всю цепочку
+ * приходится один подписчик, а не по подписчику на стадию.
+ *
+ * Без слияния каждая стадия - отдельный Subscriber со своей Subscription: на каждый элемент по вызову onNext() на
+ * стадию, а request() проходит через каждую стадию обратно к источнику. Здесь элемент проходит всю цепочку одним
+ * вызовом apply(), а отброшенный фильтром элемент возмещается источнику запросом request(1) - чтобы спрос
+ * подписчика не "потерялся" на отфильтрованных элементах.
+ */
+final class FusedPublisher<T, R> implements Flow.Publisher<R> {
+
+	/**
+	 * Результат цепочки для элемента, который отбросил фильтр.
+	 */
+	static final Object DROPPED = new Object();
+
+	private final Flow.Publisher<T> upstream;
+	private final Function<Object, Object> chain;
+
+	private FusedPublisher(Flow.Publisher<T> upstream, Function<Object, Object> chain) {
+		this.upstream = upstream;
+		this.chain = chain;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T, R> Flow.Publisher<R> map(Flow.Publisher<T> source, Function<? super T, ? extends R> mapper) {
+		return fuse(source, item -> mapper.apply((T) item));
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> Flow.Publisher<T> filter(Flow.Publisher<T> source, Predicate<? super T> predicate) {
+		return fuse(source, item -> predicate.test((T) item) ? item : DROPPED);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <R> Flow.Publisher<R> fuse(Flow.Publisher<?> source, Function<Object, Object> stage) {
+		if (source instanceof FusedPublisher) {
+			FusedPublisher<?, ?> fused = (FusedPublisher<?, ?>) source;
+			Function<Object, Object> previous = fused.chain;
+			return new FusedPublisher(fused.upstream, item -> {
+				Object value = previous.apply(item);
+				return value == DROPPED ? DROPPED : stage.apply(value);
+			});
+		}
+		return new FusedPublisher(source, stage);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super R> subscriber) {
+		upstream.subscribe(new FusedSubscriber<>(subscriber, chain));
+	}
+
+	private static final class FusedSubscriber<T, R> implements Flow.Subscriber<T>, Flow.Subscription {
+
+		private final Flow.Subscriber<? super R> downstream;
+		private final Function<Object, Object> chain;
+		private Flow.Subscription upstream;
+		private boolean done;
+
+		FusedSubscriber(Flow.Subscriber<? super R> downstream, Function<Object, Object> chain) {
+			this.downstream = downstream;
+			this.chain = chain;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			upstream = subscription;
+			downstream.onSubscribe(this);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void onNext(T item) {
+			if (done) {
+				return;
+			}
+			Object value;
+			try {
+				value = chain.apply(item);
+			} catch (Throwable e) {
+				upstream.cancel();
+				onError(e);
+				return;
+			}
+			if (value == DROPPED) {
+				upstream.request(1);
+			} else if (value == null) {
+				upstream.cancel();
+				onError(new NullPointerException("map() returned null"));
+			} else {
+				downstream.onNext((R) value);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (!done) {
+				done = true;
+				downstream.onError(throwable);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			if (!done) {
+				done = true;
+				downstream.onComplete();
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			upstream.request(n);
+		}
+
+		@Override
+		public void cancel() {
+			upstream.cancel();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package reactive;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Источник, который отдаёт элементы Iterable ровно в том количестве, в каком их запросили через request(n).
+ *
+ * Элементы выдаются в потоке того, кто запросил, пачкой - сразу весь текущий спрос в одном цикле. Если подписчик
+ * вызывает request() прямо из onNext() (обычное дело), рекурсии нет: вложенный вызов только добавляет спрос,
+ * а выдаёт элементы уже работающий цикл (trampolining). Поэтому стек не растёт, и ни один поток не ждёт.
+ */
+public class IterablePublisher<T> implements Flow.Publisher<T> {
+
+	private final Iterable<? extends T> source;
+
+	public IterablePublisher(Iterable<? extends T> source) {
+		this.source = Objects.requireNonNull(source);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		Iterator<? extends T> iterator;
+		try {
+			iterator = source.iterator();
+		} catch (Throwable e) {
+			subscriber.onSubscribe(new IteratorSubscription<>(subscriber, null));
+			subscriber.onError(e);
+			return;
+		}
+		subscriber.onSubscribe(new IteratorSubscription<>(subscriber, iterator));
+	}
+
+	static final class IteratorSubscription<T> implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final Iterator<? extends T> iterator;
+		private final AtomicLong requested = new AtomicLong();
+		private volatile boolean cancelled;
+		// ошибка request(n <= 0): сигнал отдаёт цикл выдачи, чтобы onError() не шёл параллельно с его onNext() (§1.3)
+		private volatile Throwable invalidRequest;
+
+		IteratorSubscription(Flow.Subscriber<? super T> subscriber, Iterator<? extends T> iterator) {
+			this.subscriber = subscriber;
+			this.iterator = iterator;
+			this.cancelled = iterator == null;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				if (invalidRequest == null) {
+					invalidRequest = Demand.nonPositive(n);
+				}
+				// ошибке тоже нужен цикл выдачи: добавленный спрос либо запустит его, либо его увидит уже работающий
+				n = 1;
+			}
+			// спрос был нулевым - значит, цикл выдачи никто не крутит, запускаем его сами
+			if (Demand.add(requested, n) == 0) {
+				drain();
+			}
+		}
+
+		private void drain() {
+			long emitted = 0;
+			long demand = requested.get();
+			while (true) {
+				try {
+					while (emitted != demand) {
+						if (stopped()) {
+							return;
+						}
+						if (!iterator.hasNext()) {
+							cancelled = true;
+							subscriber.onComplete();
+							return;
+						}
+						subscriber.onNext(Objects.requireNonNull(iterator.next(), "Iterable produced null"));
+						emitted++;
+					}
+					if (stopped()) {
+						return;
+					}
+					// спрос исчерпан, но если элементов больше нет, завершаем сразу, не дожидаясь следующего request()
+					if (!iterator.hasNext()) {
+						cancelled = true;
+						subscriber.onComplete();
+						return;
+					}
+				} catch (Throwable e) {
+					cancelled = true;
+					subscriber.onError(e);
+					return;
+				}
+				demand = Demand.produced(requested, emitted);
+				if (demand == 0) {
+					return;
+				}
+				emitted = 0;
+			}
+		}
+
+		/**
+		 * Отменена ли подписка; некорректный request() отменяет её здесь же, отдав подписчику ошибку.
+		 */
+		private boolean stopped() {
+			if (cancelled) {
+				return true;
+			}
+			Throwable invalid = invalidRequest;
+			if (invalid != null) {
+				cancelled = true;
+				subscriber.onError(invalid);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package reactive;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Конвейер на java.util.concurrent.Flow, где скорость задаёт потребитель (backpressure через request(n)),
+ * а не размер очереди между потоками.
+ *
+ * В collections.ProducerConsumer производитель упирается в queue.put(), когда потребитель отстаёт: ограничение
+ * памяти достигается тем, что поток стоит. Каждая новая стадия - ещё одна очередь и ещё пара потоков, которые
+ * по очереди засыпают и будят друг друга. Здесь элементы текут только навстречу спросу: подписчик запрашивает
+ * request(n), и источник отдаёт не больше n. Никто не ждёт - если спроса нет, выдавать просто нечего.
+ *
+ * Pipeline.from(source)             // IterablePublisher: отдаёт ровно запрошенное, пачками
+ *         .map(...).filter(...)     // FusedPublisher: подряд идущие map/filter - одна стадия, один вызов на элемент
+ *         .async(executor, 256)     // AsyncBoundary: буфер на 256 элементов, задача в пул - только когда есть работа
+ *         .forEach(consumer, 64);   // спрос пачками по 64, а не request(1) на каждый элемент
+ *
+ * Сборка конвейера ничего не запускает: подписка (subscribe()/forEach()) проходит от конца к началу, и только
+ * тогда источник начинает выдавать элементы. Pipeline неизменяем - каждый оператор возвращает новый.
+ */
+public final class Pipeline<T> {
+
+	private final Flow.Publisher<T> publisher;
+
+	private Pipeline(Flow.Publisher<T> publisher) {
+		this.publisher = publisher;
+	}
+
+	public static <T> Pipeline<T> from(Iterable<? extends T> source) {
+		return new Pipeline<>(new IterablePublisher<>(source));
+	}
+
+	public static <T> Pipeline<T> from(Flow.Publisher<T> publisher) {
+		return new Pipeline<>(Objects.requireNonNull(publisher));
+	}
+
+	public <R> Pipeline<R> map(Function<? super T, ? extends R> mapper) {
+		return new Pipeline<>(FusedPublisher.map(publisher, mapper));
+	}
+
+	public Pipeline<T> filter(Predicate<? super T> predicate) {
+		return new Pipeline<>(FusedPublisher.filter(publisher, predicate));
+	}
+
+	/**
+	 * Пропускает поток через processor: при подписке processor подписывается на то, что было до него.
+	 */
+	public <R> Pipeline<R> through(Flow.Processor<? super T, R> processor) {
+		Flow.Publisher<T> upstream = publisher;
+		return new Pipeline<>(subscriber -> {
+			processor.subscribe(subscriber);
+			upstream.subscribe(processor);
+		});
+	}
+
+	/**
+	 * Дальше по конвейеру элементы обрабатываются в executor (см. AsyncBoundary).
+	 */
+	public Pipeline<T> async(Executor executor, int bufferSize) {
+		return through(new AsyncBoundary<>(executor, bufferSize));
+	}
+
+	public Flow.Publisher<T> publisher() {
+		return publisher;
+	}
+
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	/**
+	 * Подписывается и передаёт каждый элемент в action. Спрос запрашивается пачками по batch элементов
+	 * и пополняется, когда израсходованы 3/4 пачки.
+	 *
+	 * @return future, которое завершается вместе с потоком (или его ошибкой, или ошибкой action)
+	 */
+	public CompletableFuture<Void> forEach(Consumer<? super T> action, int batch) {
+		if (batch <= 0) {
+			throw new IllegalArgumentException("batch must be positive: " + batch);
+		}
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		publisher.subscribe(new ForEachSubscriber<>(action, batch, result));
+		return result;
+	}
+
+	private static final class ForEachSubscriber<T> implements Flow.Subscriber<T> {
+
+		private final Consumer<? super T> action;
+		private final int batch;
+		private final int limit;
+		private final CompletableFuture<Void> result;
+		private Flow.Subscription subscription;
+		private int received;
+
+		ForEachSubscriber(Consumer<? super T> action, int batch, CompletableFuture<Void> result) {
+			this.action = action;
+			this.batch = batch;
+			this.limit = Math.max(1, batch - (batch >> 2));
+			this.result = result;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			// отмена future отменяет и подписку
+			result.whenComplete((ignored, e) -> {
+				if (e instanceof CancellationException) {
+					subscription.cancel();
+				}
+			});
+			subscription.request(batch);
+		}
+
+		@Override
+		public void onNext(T item) {
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				action.accept(item);
+			} catch (Throwable e) {
+				subscription.cancel();
+				result.completeExceptionally(e);
+				return;
+			}
+			if (++received == limit) {
+				received = 0;
+				subscription.request(limit);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			result.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			result.complete(null);
+		}
+	}
+
+	// ================================================================================================================
+
+	/**
+	 * Числа [0, count) без хранения в памяти.
+	 */
+	static Iterable<Integer> range(int count) {
+		return () -> new Iterator<>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < count;
+			}
+
+			@Override
+			public Integer next() {
+				if (next >= count) {
+					throw new NoSuchElementException();
+				}
+				return next++;
+			}
+		};
+	}
+
+	private static long transform(int i) {
+		return i * 31L + 7;
+	}
+
+	/**
+	 * Сколько раз потоки уходили в ожидание (wait/park) и на блокировку монитора, по ThreadMXBean.
+	 */
+	private static long waits(List<Thread> threads) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		long waits = 0;
+		for (Thread thread : threads) {
+			ThreadInfo info = bean.getThreadInfo(thread.getId());
+			if (info != null) {
+				waits += info.getWaitedCount() + info.getBlockedCount();
+			}
+		}
+		return waits;
+	}
+
+	private static ExecutorService pool(int threads, List<Thread> created, String name) {
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + created.size());
+			created.add(thread);
+			return thread;
+		});
+	}
+
+	/**
+	 * Тот же конвейер по-старому: производитель, преобразователь и потребитель - три потока и две
+	 * ArrayBlockingQueue между ними; -1 - признак конца.
+	 */
+	private static long queues(int items, int capacity, ExecutorService executorService) throws Exception {
+		BlockingQueue<Integer> input = new ArrayBlockingQueue<>(capacity);
+		BlockingQueue<Long> output = new ArrayBlockingQueue<>(capacity);
+		executorService.submit(() -> {
+			for (int i : range(items)) {
+				input.put(i);
+			}
+			input.put(-1);
+			return null;
+		});
+		executorService.submit(() -> {
+			int i;
+			while ((i = input.take()) != -1) {
+				long value = transform(i);
+				if (value % 3 != 0) {
+					output.put(value);
+				}
+			}
+			output.put(-1L);
+			return null;
+		});
+		return executorService.submit(() -> {
+			long sum = 0;
+			long value;
+			while ((value = output.take()) != -1) {
+				sum += value;
+			}
+			return sum;
+		}).get();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+		int bufferSize = 256;
+
+		long expected = 0;
+		for (int i = 0; i < items; i++) {
+			long value = transform(i);
+			if (value % 3 != 0) {
+				expected += value;
+			}
+		}
+
+		System.out.printf("%-36s %12s %10s %12s %12s%n", "", "M items/s", "waits", "handoffs", "max buffered");
+		for (int round = 0; round < 3; round++) {
+			List<Thread> threads = new CopyOnWriteArrayList<>();
+			ExecutorService executorService = pool(3, threads, "queue-stage");
+			try {
+				long start = System.nanoTime();
+				long sum = queues(items, bufferSize, executorService);
+				long elapsed = System.nanoTime() - start;
+				check(sum, expected);
+				System.out.printf("%-36s %12.2f %10d %12s %12s%n", "3 threads + 2 ArrayBlockingQueue",
+						(double) items / elapsed * 1_000, waits(threads), "-", "<= " + 2 * bufferSize);
+			} finally {
+				executorService.shutdown();
+			}
+
+			threads = new CopyOnWriteArrayList<>();
+			executorService = pool(2, threads, "flow");
+			try {
+				AsyncBoundary<Long> boundary = new AsyncBoundary<>(executorService, bufferSize);
+				AtomicLong flowSum = new AtomicLong();
+				long start = System.nanoTime();
+				Pipeline.from(range(items))
+						.map(Pipeline::transform)
+						.filter(value -> value % 3 != 0)
+						.through(boundary)
+						.forEach(value -> flowSum.lazySet(flowSum.get() + value), 64)
+						.get();
+				long elapsed = System.nanoTime() - start;
+				check(flowSum.get(), expected);
+				System.out.printf("%-36s %12.2f %10d %12d %12d%n", "Flow: map+filter fused, async boundary",
+						(double) items / elapsed * 1_000, waits(threads), boundary.handoffs(), boundary.maxBuffered());
+			} finally {
+				executorService.shutdown();
+			}
+		}
+	}
+
+	private static void check(long sum, long expected) {
+		if (sum != expected) {
+			throw new IllegalStateException("Lost or duplicated items: sum = " + sum + ", expected " + expected);
+		}
+	}
+}